@@ -0,0 +1,45 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A page of a list which is paginated by key. In addition to the items, it carries an opaque cursor which is passed
+ * back by the client to retrieve the following page.
+ *
+ * @param <T> type of the List items
+ */
+public class CursorPaginationList<T> extends ArrayList<T> {
+	private static final long serialVersionUID = 1L;
+
+	private final String nextCursor;
+
+	public CursorPaginationList(final Collection<? extends T> items, final String nextCursor) {
+		super(items);
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * @return the cursor of the following page or <code>null</code> if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+}
@@ -17,6 +17,7 @@
  */
 package de.thm.arsnova.aop;
 
+import de.thm.arsnova.CursorPaginationList;
 import de.thm.arsnova.PaginationListDecorator;
 import de.thm.arsnova.controller.PaginationController;
 import de.thm.arsnova.services.ResponseProviderService;
@@ -37,7 +38,8 @@ import java.util.regex.Pattern;
 /**
  * An aspect which parses requests for pagination parameters in a "Range" header and adds a "Content-Range" header to
  * the response. It only applies to methods of {@link PaginationController}s annotated with
- * {@link de.thm.arsnova.web.Pagination} which return a {@link List}.
+ * {@link de.thm.arsnova.web.Pagination} which return a {@link List}. If the list is paginated by key, the cursor of
+ * the following page is added as "X-Next-Cursor" header.
  */
 @Aspect
 @Configurable
@@ -92,6 +94,10 @@ public class RangeAspect {
 			HttpServletResponse response = responseProviderService.getResponse();
 			response.addHeader("Content-Range", rangeStr);
 		}
+		if (list instanceof CursorPaginationList && ((CursorPaginationList<?>) list).getNextCursor() != null) {
+			responseProviderService.getResponse().addHeader("X-Next-Cursor",
+					((CursorPaginationList<?>) list).getNextCursor());
+		}
 
 		return list;
 	}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.aop;
+
+import de.thm.arsnova.cache.RequestIdentityMap;
+import de.thm.arsnova.entities.Comment;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.DeclarePrecedence;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Configurable;
+
+/**
+ * Serves repeated lookups of sessions, contents and comments by ID or keyword from the {@link RequestIdentityMap}
+ * within a single HTTP request or socket event. This aspect takes precedence over the caching aspect, so memoized
+ * lookups do not reach the cache. Any other call of a repository which is not a getter discards the memoized
+ * entities of the repository's type.
+ */
+@Aspect
+@Configurable
+@DeclarePrecedence("de.thm.arsnova.aop.RepositoryIdentityMapAspect, *")
+public class RepositoryIdentityMapAspect {
+	private static final String ID_PREFIX = "id:";
+	private static final String KEYWORD_PREFIX = "keyword:";
+
+	@Autowired
+	private RequestIdentityMap requestIdentityMap;
+
+	/** Binds a map to the thread for the duration of a socket event.
+	 */
+	@Around("execution(* com.corundumstudio.socketio.listener.DataListener+.onData(..)) && within(de.thm.arsnova.socket..*)")
+	public Object socketEventAdvice(final ProceedingJoinPoint pjp) throws Throwable {
+		if (requestIdentityMap == null) {
+			return pjp.proceed();
+		}
+		requestIdentityMap.open();
+		try {
+			return pjp.proceed();
+		} finally {
+			requestIdentityMap.close();
+		}
+	}
+
+	@Around("execution(de.thm.arsnova.entities.Session de.thm.arsnova.persistance.SessionRepository+.getSessionFromId(String))"
+			+ " && args(id)")
+	public Object getSessionFromIdAdvice(final ProceedingJoinPoint pjp, final String id) throws Throwable {
+		return getSession(pjp, ID_PREFIX + id);
+	}
+
+	@Around("execution(de.thm.arsnova.entities.Session de.thm.arsnova.persistance.SessionRepository+.getSessionFromKeyword(String))"
+			+ " && args(keyword)")
+	public Object getSessionFromKeywordAdvice(final ProceedingJoinPoint pjp, final String keyword) throws Throwable {
+		return getSession(pjp, KEYWORD_PREFIX + keyword);
+	}
+
+	@Around("execution(de.thm.arsnova.entities.Content de.thm.arsnova.persistance.ContentRepository+.getQuestion(String))"
+			+ " && args(id)")
+	public Object getQuestionAdvice(final ProceedingJoinPoint pjp, final String id) throws Throwable {
+		if (requestIdentityMap == null) {
+			return pjp.proceed();
+		}
+		Content content = requestIdentityMap.get(Content.class, id);
+		if (content == null) {
+			content = (Content) pjp.proceed();
+			requestIdentityMap.put(Content.class, id, content);
+		}
+
+		return content;
+	}
+
+	@Around("execution(de.thm.arsnova.entities.Comment de.thm.arsnova.persistance.CommentRepository+.getInterposedQuestion(String))"
+			+ " && args(id)")
+	public Object getInterposedQuestionAdvice(final ProceedingJoinPoint pjp, final String id) throws Throwable {
+		if (requestIdentityMap == null) {
+			return pjp.proceed();
+		}
+		Comment comment = requestIdentityMap.get(Comment.class, id);
+		if (comment == null) {
+			comment = (Comment) pjp.proceed();
+			requestIdentityMap.put(Comment.class, id, comment);
+		}
+
+		return comment;
+	}
+
+	@After("execution(* de.thm.arsnova.persistance.SessionRepository+.*(..))"
+			+ " && !execution(* de.thm.arsnova.persistance.SessionRepository+.get*(..))")
+	public void sessionRepositoryChangeAdvice() {
+		evict(Session.class);
+	}
+
+	@After("execution(* de.thm.arsnova.persistance.ContentRepository+.*(..))"
+			+ " && !execution(* de.thm.arsnova.persistance.ContentRepository+.get*(..))")
+	public void contentRepositoryChangeAdvice() {
+		evict(Content.class);
+	}
+
+	@After("execution(* de.thm.arsnova.persistance.CommentRepository+.*(..))"
+			+ " && !execution(* de.thm.arsnova.persistance.CommentRepository+.get*(..))")
+	public void commentRepositoryChangeAdvice() {
+		evict(Comment.class);
+	}
+
+	private Object getSession(final ProceedingJoinPoint pjp, final String key) throws Throwable {
+		if (requestIdentityMap == null) {
+			return pjp.proceed();
+		}
+		Session session = requestIdentityMap.get(Session.class, key);
+		if (session == null) {
+			session = (Session) pjp.proceed();
+			if (session != null) {
+				requestIdentityMap.put(Session.class, ID_PREFIX + session.getId(), session);
+				requestIdentityMap.put(Session.class, KEYWORD_PREFIX + session.getKeyword(), session);
+			}
+		}
+
+		return session;
+	}
+
+	private void evict(final Class<?> type) {
+		if (requestIdentityMap != null) {
+			requestIdentityMap.evict(type);
+		}
+	}
+}
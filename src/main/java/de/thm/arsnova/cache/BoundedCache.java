@@ -0,0 +1,485 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Adapts a size-bounded, expiring Guava cache to Spring's cache abstraction. <code>null</code> values are supported.
+ * Synchronized lookups, i.e., {@link #get(Object, Callable)} which is used for <code>@Cacheable(sync = true)</code>,
+ * load a missing value only once: concurrent callers for the same key wait for the first caller's load. Loads are only
+ * timed for synchronized lookups.
+ *
+ * <p>
+ * If a time to live is set, each entry expires at a random point of time between the time to live reduced by the
+ * jitter and the full time to live, so entries which have been loaded together do not expire together. Entries which
+ * are requested by synchronized lookups shortly before they expire are reloaded in the background by the refresh
+ * executor. All callers, including the one which triggered the refresh, are served the current value until the
+ * reload has completed. Without a refresh executor, entries are not refreshed ahead.
+ * </p>
+ *
+ * <p>
+ * If a {@link SharedCacheTier} is set, this cache is the near cache of a two-tier cache: Missing entries are looked up
+ * in the shared tier before they are loaded, and loaded or stored values are written to both tiers. Every eviction
+ * is applied to both tiers and broadcast, so the near caches of other nodes drop the entries as well.
+ * </p>
+ */
+public class BoundedCache extends AbstractValueAdaptingCache {
+	private static final Logger logger = LoggerFactory.getLogger(BoundedCache.class);
+
+	private final String name;
+	private final com.google.common.cache.Cache<Object, Object> cache;
+	private final long timeToLiveMs;
+	private final double expiryJitter;
+	private final double refreshAhead;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong coalescedLoads = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong sharedHits = new AtomicLong();
+	private final SharedCacheTier sharedTier;
+	private final String nodeId;
+	private final Executor refreshExecutor;
+
+	public BoundedCache(final String name, final com.google.common.cache.Cache<Object, Object> cache) {
+		this(name, cache, 0, 0, 0);
+	}
+
+	/**
+	 * @param timeToLiveMs maximum lifetime of entries, 0 if entries do not expire after write
+	 * @param expiryJitter fraction of the time to live by which the lifetime of an entry is randomly reduced
+	 * @param refreshAhead fraction of the time to live before the expiry of an entry in which it is refreshed
+	 */
+	public BoundedCache(final String name, final com.google.common.cache.Cache<Object, Object> cache,
+			final long timeToLiveMs, final double expiryJitter, final double refreshAhead) {
+		this(name, cache, timeToLiveMs, expiryJitter, refreshAhead, null, null);
+	}
+
+	/**
+	 * @param sharedTier shared tier of a two-tier cache or <code>null</code> if the cache is local
+	 * @param nodeId ID of this node which is sent with invalidations
+	 */
+	public BoundedCache(final String name, final com.google.common.cache.Cache<Object, Object> cache,
+			final long timeToLiveMs, final double expiryJitter, final double refreshAhead,
+			final SharedCacheTier sharedTier, final String nodeId) {
+		this(name, cache, timeToLiveMs, expiryJitter, refreshAhead, sharedTier, nodeId, null);
+	}
+
+	/**
+	 * @param refreshExecutor executes the reloads of entries which are refreshed ahead of their expiry or
+	 * <code>null</code> if entries are not refreshed ahead
+	 */
+	public BoundedCache(final String name, final com.google.common.cache.Cache<Object, Object> cache,
+			final long timeToLiveMs, final double expiryJitter, final double refreshAhead,
+			final SharedCacheTier sharedTier, final String nodeId, final Executor refreshExecutor) {
+		super(true);
+		this.name = name;
+		this.cache = cache;
+		this.timeToLiveMs = timeToLiveMs;
+		this.expiryJitter = expiryJitter;
+		this.refreshAhead = refreshAhead;
+		this.sharedTier = sharedTier;
+		this.nodeId = nodeId;
+		this.refreshExecutor = refreshExecutor;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public com.google.common.cache.Cache<Object, Object> getNativeCache() {
+		return cache;
+	}
+
+	@Override
+	protected Object lookup(final Object key) {
+		final Entry entry = getValidEntry(key);
+		if (entry == null) {
+			final Object sharedValue = lookupShared(key);
+			if (sharedValue != null) {
+				hits.incrementAndGet();
+
+				return sharedValue;
+			}
+			misses.incrementAndGet();
+
+			return null;
+		}
+		hits.incrementAndGet();
+		entry.accesses.incrementAndGet();
+
+		return entry.value;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T get(final Object key, final Callable<T> valueLoader) {
+		final Entry entry = getValidEntry(key);
+		if (entry != null) {
+			hits.incrementAndGet();
+			entry.accesses.incrementAndGet();
+			if (refreshExecutor != null && entry.refreshAt <= System.currentTimeMillis()
+					&& entry.refreshing.compareAndSet(false, true)) {
+				scheduleRefresh(key, entry, valueLoader);
+			}
+
+			return (T) fromStoreValue(entry.value);
+		}
+		misses.incrementAndGet();
+		final AtomicBoolean loaded = new AtomicBoolean();
+		try {
+			final Entry loadedEntry = (Entry) cache.get(key, () -> {
+				final Object sharedValue = getShared(key);
+				if (sharedValue != null) {
+					sharedHits.incrementAndGet();
+
+					return createEntry(sharedValue);
+				}
+				loaded.set(true);
+				final Object value = toStoreValue(valueLoader.call());
+				putShared(key, value);
+
+				return createEntry(value);
+			});
+			if (!loaded.get()) {
+				/* The value has been loaded by a concurrent caller. */
+				coalescedLoads.incrementAndGet();
+			}
+
+			return (T) fromStoreValue(loadedEntry.value);
+		} catch (final ExecutionException | UncheckedExecutionException e) {
+			throw new ValueRetrievalException(key, valueLoader, e.getCause());
+		}
+	}
+
+	@Override
+	public void put(final Object key, final Object value) {
+		final Object storeValue = toStoreValue(value);
+		cache.put(key, createEntry(storeValue));
+		putShared(key, storeValue);
+	}
+
+	@Override
+	public ValueWrapper putIfAbsent(final Object key, final Object value) {
+		final Entry created = createEntry(toStoreValue(value));
+		final Entry existing = (Entry) cache.asMap().putIfAbsent(key, created);
+		if (existing == null
+				|| existing.isExpired(System.currentTimeMillis()) && cache.asMap().replace(key, existing, created)) {
+			putShared(key, created.value);
+
+			return null;
+		}
+
+		return toValueWrapper(existing.value);
+	}
+
+	@Override
+	public void evict(final Object key) {
+		cache.invalidate(key);
+		evictShared(key);
+	}
+
+	/**
+	 * Evicts the entry for the key.
+	 *
+	 * @return <code>true</code> if an entry was present
+	 */
+	public boolean evictIfPresent(final Object key) {
+		final boolean present = cache.asMap().remove(key) != null;
+		evictShared(key);
+
+		return present;
+	}
+
+	@Override
+	public void clear() {
+		cache.invalidateAll();
+		if (sharedTier != null) {
+			sharedTier.clear(name);
+			sharedTier.broadcast(new CacheInvalidation(nodeId, name, null));
+		}
+	}
+
+	/**
+	 * Evicts all entries for which the predicate matches the key or the value.
+	 *
+	 * @return the number of evicted entries
+	 */
+	public int evictIf(final BiPredicate<Object, Object> predicate) {
+		int count = 0;
+		for (final Map.Entry<Object, Object> mapEntry : cache.asMap().entrySet()) {
+			final Object value = fromStoreValue(((Entry) mapEntry.getValue()).value);
+			if (predicate.test(mapEntry.getKey(), value) && cache.asMap().remove(mapEntry.getKey(), mapEntry.getValue())) {
+				evictShared(mapEntry.getKey());
+				count++;
+			}
+		}
+		if (sharedTier != null) {
+			/* Entries might have been stored in the shared tier by other nodes only. */
+			final Collection<Object> keys = sharedTier.evictIf(name,
+					(final Object key, final Object value) -> predicate.test(key, fromStoreValue(value)));
+			for (final Object key : keys) {
+				cache.invalidate(key);
+				sharedTier.broadcast(new CacheInvalidation(nodeId, name, key));
+			}
+			count += keys.size();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Drops entries from this near cache as requested by an invalidation of another node. The shared tier is not
+	 * modified.
+	 */
+	public void invalidateLocally(final CacheInvalidation invalidation) {
+		if (invalidation.isClear()) {
+			cache.invalidateAll();
+		} else {
+			cache.invalidate(invalidation.getKey());
+		}
+	}
+
+	public boolean isShared() {
+		return sharedTier != null;
+	}
+
+	public long getSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Returns the number of synchronized lookups which missed the cache but did not load the value themselves because
+	 * it was already being loaded by another caller.
+	 */
+	public long getCoalescedLoadCount() {
+		return coalescedLoads.get();
+	}
+
+	public long getRefreshCount() {
+		return refreshes.get();
+	}
+
+	/**
+	 * Returns the number of entries which missed the near cache but were found in the shared tier.
+	 */
+	public long getSharedHitCount() {
+		return sharedHits.get();
+	}
+
+	/**
+	 * Returns the statistics of the cache. Hits and misses are counted by this cache since entries might expire before
+	 * Guava removes them. Loads and evictions are recorded by Guava.
+	 */
+	public CacheStats getStats() {
+		final CacheStats stats = cache.stats();
+
+		return new CacheStats(hits.get(), misses.get(), stats.loadSuccessCount(), stats.loadExceptionCount(),
+				stats.totalLoadTime(), stats.evictionCount());
+	}
+
+	/**
+	 * Returns the key, estimated size and number of hits of each valid entry. Entries which have not been weighed yet
+	 * are weighed once and their weight is kept.
+	 */
+	public List<EntryStatistics> getEntryStatistics(final EntryWeigher weigher) {
+		final long now = System.currentTimeMillis();
+		final List<EntryStatistics> statistics = new ArrayList<>();
+		for (final Map.Entry<Object, Object> mapEntry : cache.asMap().entrySet()) {
+			final Entry entry = (Entry) mapEntry.getValue();
+			if (entry.isExpired(now)) {
+				continue;
+			}
+			statistics.add(new EntryStatistics(mapEntry.getKey(), weigh(weigher, mapEntry.getKey(), entry),
+					entry.accesses.get()));
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Returns the value stored by the cache for a native cache entry.
+	 */
+	static Object unwrap(final Object nativeValue) {
+		return nativeValue instanceof Entry ? ((Entry) nativeValue).value : nativeValue;
+	}
+
+	/**
+	 * Weighs a native cache entry and keeps its weight for statistics.
+	 */
+	static int weigh(final EntryWeigher weigher, final Object key, final Object nativeValue) {
+		if (!(nativeValue instanceof Entry)) {
+			return weigher.weigh(key, nativeValue);
+		}
+		final Entry entry = (Entry) nativeValue;
+		int weight = entry.weight;
+		if (weight < 0) {
+			weight = weigher.weigh(key, entry.value);
+			entry.weight = weight;
+		}
+
+		return weight;
+	}
+
+	private Entry getValidEntry(final Object key) {
+		final Entry entry = (Entry) cache.asMap().get(key);
+		if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+			cache.asMap().remove(key, entry);
+
+			return null;
+		}
+
+		return entry;
+	}
+
+	private void scheduleRefresh(final Object key, final Entry entry, final Callable<?> valueLoader) {
+		try {
+			refreshExecutor.execute(() -> refresh(key, entry, valueLoader));
+		} catch (final RejectedExecutionException e) {
+			/* The entry is refreshed by a later lookup or loaded again after its expiry. */
+			logger.debug("Skipped refresh of entry {} of cache {} since too many refreshes are pending.", key, name);
+			entry.refreshing.set(false);
+		}
+	}
+
+	private void refresh(final Object key, final Entry entry, final Callable<?> valueLoader) {
+		try {
+			final Entry refreshed = createEntry(toStoreValue(valueLoader.call()));
+			/* The refreshed value is dropped if the entry has been evicted or replaced in the meantime. */
+			if (cache.asMap().replace(key, entry, refreshed)) {
+				putShared(key, refreshed.value);
+			}
+			refreshes.incrementAndGet();
+		} catch (final Exception e) {
+			logger.debug("Could not refresh entry {} of cache {}.", key, name, e);
+			entry.refreshing.set(false);
+		}
+	}
+
+	/**
+	 * Returns the value from the shared tier and stores it in the near cache or returns <code>null</code> if the
+	 * shared tier does not contain the key.
+	 */
+	private Object lookupShared(final Object key) {
+		final Object sharedValue = getShared(key);
+		if (sharedValue == null) {
+			return null;
+		}
+		sharedHits.incrementAndGet();
+		cache.asMap().putIfAbsent(key, createEntry(sharedValue));
+
+		return sharedValue;
+	}
+
+	private Object getShared(final Object key) {
+		return sharedTier != null ? sharedTier.get(name, key) : null;
+	}
+
+	private void putShared(final Object key, final Object storeValue) {
+		if (sharedTier != null) {
+			sharedTier.put(name, key, storeValue, timeToLiveMs);
+		}
+	}
+
+	private void evictShared(final Object key) {
+		if (sharedTier != null) {
+			sharedTier.evict(name, key);
+			sharedTier.broadcast(new CacheInvalidation(nodeId, name, key));
+		}
+	}
+
+	private Entry createEntry(final Object value) {
+		if (timeToLiveMs <= 0) {
+			return new Entry(value, Long.MAX_VALUE, Long.MAX_VALUE);
+		}
+		final long lifetime = timeToLiveMs - (long) (timeToLiveMs * expiryJitter * ThreadLocalRandom.current().nextDouble());
+		final long expiresAt = System.currentTimeMillis() + lifetime;
+		final long refreshAt = refreshAhead > 0 ? expiresAt - (long) (timeToLiveMs * refreshAhead) : Long.MAX_VALUE;
+
+		return new Entry(value, expiresAt, refreshAt);
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long expiresAt;
+		private final long refreshAt;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+		private final AtomicInteger accesses = new AtomicInteger();
+		private volatile int weight = -1;
+
+		private Entry(final Object value, final long expiresAt, final long refreshAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+			this.refreshAt = refreshAt;
+		}
+
+		private boolean isExpired(final long now) {
+			return expiresAt <= now;
+		}
+	}
+
+	public static final class EntryStatistics {
+		private final Object key;
+		private final int weight;
+		private final int accesses;
+
+		private EntryStatistics(final Object key, final int weight, final int accesses) {
+			this.key = key;
+			this.weight = weight;
+			this.accesses = accesses;
+		}
+
+		public Object getKey() {
+			return key;
+		}
+
+		/**
+		 * Returns the estimated size of the entry in bytes.
+		 */
+		public int getWeight() {
+			return weight;
+		}
+
+		/**
+		 * Returns the number of hits of the entry.
+		 */
+		public int getAccesses() {
+			return accesses;
+		}
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import de.thm.arsnova.entities.CacheKeyStatistics;
+import de.thm.arsnova.entities.CacheStatistics;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates size-bounded, expiring caches on demand. Each cache is configured by the Guava cache specification of the
+ * property <code>cache.&lt;name&gt;.spec</code>, falling back to <code>cache.default.spec</code>. If a specification
+ * contains <code>maximumWeight</code>, entries are weighed by their approximate size in bytes. For caches with
+ * <code>expireAfterWrite</code>, the lifetime of entries is jittered and entries are refreshed ahead of their expiry
+ * according to <code>cache.&lt;name&gt;.expiry-jitter</code> and <code>cache.&lt;name&gt;.refresh-ahead</code>.
+ *
+ * Caches listed in <code>cache.shared.names</code> are created as near caches of a two-tier cache backed by the
+ * {@link SharedCacheTier}. Invalidations broadcast by other nodes are applied to the near caches of this node.
+ */
+@MonitorGauges
+public class BoundedCacheManager implements CacheManager {
+	public static final String DEFAULT_SPEC = "maximumSize=10000,expireAfterWrite=30m";
+	public static final double DEFAULT_EXPIRY_JITTER = 0.2;
+	public static final double DEFAULT_REFRESH_AHEAD = 0.1;
+
+	/* Refreshes are only an optimization, so they are skipped if too many are pending. */
+	private static final int REFRESH_THREADS = 2;
+	private static final int REFRESH_QUEUE_SIZE = 100;
+
+	private static final Pattern EXPIRE_AFTER_WRITE_PATTERN = Pattern.compile("expireAfterWrite=(\\d+)([dhms])");
+
+	private static final Logger logger = LoggerFactory.getLogger(BoundedCacheManager.class);
+
+	private final Environment env;
+	private final EntryWeigher weigher = new EntryWeigher();
+	private final ConcurrentMap<String, BoundedCache> caches = new ConcurrentHashMap<>();
+	private final SharedCacheTier sharedTier;
+	private final Set<String> sharedCacheNames = new HashSet<>();
+	private final String nodeId = UUID.randomUUID().toString();
+	private final AtomicLong receivedInvalidations = new AtomicLong();
+	private final ExecutorService refreshExecutor;
+
+	public BoundedCacheManager(final Environment env) {
+		this(env, null);
+	}
+
+	/**
+	 * @param sharedTier shared tier for the caches listed in <code>cache.shared.names</code>
+	 */
+	public BoundedCacheManager(final Environment env, final SharedCacheTier sharedTier) {
+		this.env = env;
+		this.sharedTier = sharedTier;
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS,
+				60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(REFRESH_QUEUE_SIZE), r -> {
+					final Thread thread = new Thread(r, "cache-refresh");
+					thread.setDaemon(true);
+
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		this.refreshExecutor = executor;
+		final String names = env.getProperty("cache.shared.names", "");
+		for (final String name : names.split(",")) {
+			if (!name.trim().isEmpty()) {
+				sharedCacheNames.add(name.trim());
+			}
+		}
+		if (sharedTier != null && !sharedCacheNames.isEmpty()) {
+			logger.info("Node {} shares caches {}.", nodeId, sharedCacheNames);
+			sharedTier.subscribe(this::onInvalidation);
+		}
+	}
+
+	@Override
+	public Cache getCache(final String name) {
+		BoundedCache cache = caches.get(name);
+		if (cache == null) {
+			cache = createCache(name);
+			final BoundedCache existing = caches.putIfAbsent(name, cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+
+		return cache;
+	}
+
+	@Override
+	public Collection<String> getCacheNames() {
+		return Collections.unmodifiableSet(caches.keySet());
+	}
+
+	/**
+	 * Returns the statistics of all caches created so far ordered by the caches' names.
+	 */
+	public Map<String, CacheStats> getStatistics() {
+		final Map<String, CacheStats> statistics = new TreeMap<>();
+		for (final BoundedCache cache : caches.values()) {
+			statistics.put(cache.getName(), cache.getStats());
+		}
+
+		return statistics;
+	}
+
+	/**
+	 * Returns detailed statistics of all caches created so far ordered by the caches' names. The sizes of all entries
+	 * are estimated, so this method is expensive for large caches.
+	 *
+	 * @param topKeys number of the largest and most frequently accessed keys to report per cache
+	 */
+	public List<CacheStatistics> getCacheStatistics(final int topKeys) {
+		final List<CacheStatistics> result = new ArrayList<>();
+		for (final String name : new TreeMap<>(caches).keySet()) {
+			final BoundedCache cache = caches.get(name);
+			final CacheStats stats = cache.getStats();
+			final List<BoundedCache.EntryStatistics> entries = cache.getEntryStatistics(weigher);
+			long bytes = 0;
+			for (final BoundedCache.EntryStatistics entry : entries) {
+				bytes += entry.getWeight();
+			}
+			final CacheStatistics statistics = new CacheStatistics();
+			statistics.setName(name);
+			statistics.setShared(cache.isShared());
+			statistics.setEntries(entries.size());
+			statistics.setEstimatedBytes(bytes);
+			statistics.setHits(stats.hitCount());
+			statistics.setMisses(stats.missCount());
+			statistics.setEvictions(stats.evictionCount());
+			statistics.setTopKeysByWeight(
+					getTopKeys(entries, Comparator.comparingInt(BoundedCache.EntryStatistics::getWeight), topKeys));
+			statistics.setTopKeysByAccess(
+					getTopKeys(entries, Comparator.comparingInt(BoundedCache.EntryStatistics::getAccesses), topKeys));
+			result.add(statistics);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Evicts all entries of all caches for which the predicate matches the key or the value.
+	 *
+	 * @return the number of evicted entries
+	 */
+	public int evictIf(final BiPredicate<Object, Object> predicate) {
+		int count = 0;
+		for (final BoundedCache cache : caches.values()) {
+			count += cache.evictIf(predicate);
+		}
+
+		return count;
+	}
+
+	@Gauge
+	public long cacheEntries() {
+		long count = 0;
+		for (final BoundedCache cache : caches.values()) {
+			count += cache.getSize();
+		}
+
+		return count;
+	}
+
+	@Gauge
+	public double cacheHitRatio() {
+		return getTotalStats().hitRate();
+	}
+
+	@Gauge
+	public long cacheHits() {
+		return getTotalStats().hitCount();
+	}
+
+	@Gauge
+	public long cacheMisses() {
+		return getTotalStats().missCount();
+	}
+
+	@Gauge
+	public long cacheEvictions() {
+		return getTotalStats().evictionCount();
+	}
+
+	@Gauge
+	public long cacheCoalescedLoads() {
+		long count = 0;
+		for (final BoundedCache cache : caches.values()) {
+			count += cache.getCoalescedLoadCount();
+		}
+
+		return count;
+	}
+
+	@Gauge
+	public long cacheRefreshes() {
+		long count = 0;
+		for (final BoundedCache cache : caches.values()) {
+			count += cache.getRefreshCount();
+		}
+
+		return count;
+	}
+
+	@Gauge
+	public long cacheSharedTierHits() {
+		long count = 0;
+		for (final BoundedCache cache : caches.values()) {
+			count += cache.getSharedHitCount();
+		}
+
+		return count;
+	}
+
+	@Gauge
+	public long cacheInvalidationsReceived() {
+		return receivedInvalidations.get();
+	}
+
+	@Gauge
+	public long cacheLoadTimeMs() {
+		return TimeUnit.NANOSECONDS.toMillis(getTotalStats().totalLoadTime());
+	}
+
+	private CacheStats getTotalStats() {
+		CacheStats total = new CacheStats(0, 0, 0, 0, 0, 0);
+		for (final BoundedCache cache : caches.values()) {
+			total = total.plus(cache.getStats());
+		}
+
+		return total;
+	}
+
+	@PreDestroy
+	public void destroy() {
+		refreshExecutor.shutdownNow();
+	}
+
+	private BoundedCache createCache(final String name) {
+		final String spec = getProperty(name, "spec", DEFAULT_SPEC);
+		final double expiryJitter = Double.parseDouble(
+				getProperty(name, "expiry-jitter", String.valueOf(DEFAULT_EXPIRY_JITTER)));
+		final double refreshAhead = Double.parseDouble(
+				getProperty(name, "refresh-ahead", String.valueOf(DEFAULT_REFRESH_AHEAD)));
+		logger.info("Creating cache {} with specification {}, expiry jitter {} and refresh ahead {}.",
+				name, spec, expiryJitter, refreshAhead);
+		CacheBuilder<Object, Object> builder = CacheBuilder.from(spec).recordStats();
+		if (spec.contains("maximumWeight")) {
+			builder = builder.weigher(
+					(final Object key, final Object value) -> BoundedCache.weigh(weigher, key, value));
+		}
+
+		final boolean shared = sharedTier != null && sharedCacheNames.contains(name);
+
+		return new BoundedCache(name, builder.build(), parseTimeToLive(spec), expiryJitter, refreshAhead,
+				shared ? sharedTier : null, nodeId, refreshExecutor);
+	}
+
+	private static List<CacheKeyStatistics> getTopKeys(final List<BoundedCache.EntryStatistics> entries,
+			final Comparator<BoundedCache.EntryStatistics> comparator, final int limit) {
+		final List<BoundedCache.EntryStatistics> sorted = new ArrayList<>(entries);
+		sorted.sort(comparator.reversed());
+		final List<CacheKeyStatistics> result = new ArrayList<>();
+		for (final BoundedCache.EntryStatistics entry : sorted.subList(0, Math.min(limit, sorted.size()))) {
+			result.add(new CacheKeyStatistics(describeKey(entry.getKey()), entry.getWeight(), entry.getAccesses()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns a short description of a cache key. Entities are described by their type and ID or keyword.
+	 */
+	private static String describeKey(final Object key) {
+		if (key instanceof Content) {
+			return "content:" + ((Content) key).getId();
+		} else if (key instanceof Session) {
+			return "session:" + ((Session) key).getKeyword();
+		}
+
+		return String.valueOf(key);
+	}
+
+	private void onInvalidation(final CacheInvalidation invalidation) {
+		if (nodeId.equals(invalidation.getOrigin())) {
+			return;
+		}
+		final BoundedCache cache = caches.get(invalidation.getCacheName());
+		if (cache != null && cache.isShared()) {
+			receivedInvalidations.incrementAndGet();
+			cache.invalidateLocally(invalidation);
+		}
+	}
+
+	private String getProperty(final String cacheName, final String property, final String defaultValue) {
+		return env.getProperty("cache." + cacheName + "." + property,
+				env.getProperty("cache.default." + property, defaultValue));
+	}
+
+	/**
+	 * Returns the duration of <code>expireAfterWrite</code> of the specification in milliseconds or 0 if it is not set.
+	 */
+	static long parseTimeToLive(final String spec) {
+		final Matcher matcher = EXPIRE_AFTER_WRITE_PATTERN.matcher(spec);
+		if (!matcher.find()) {
+			return 0;
+		}
+		final long duration = Long.parseLong(matcher.group(1));
+		switch (matcher.group(2)) {
+			case "d":
+				return TimeUnit.DAYS.toMillis(duration);
+			case "h":
+				return TimeUnit.HOURS.toMillis(duration);
+			case "m":
+				return TimeUnit.MINUTES.toMillis(duration);
+			default:
+				return TimeUnit.SECONDS.toMillis(duration);
+		}
+	}
+}
@@ -21,6 +21,8 @@ import de.thm.arsnova.events.NovaEvent;
 import de.thm.arsnova.events.NovaEventVisitor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 /**
@@ -28,7 +30,9 @@ import org.springframework.stereotype.Component;
  *
  * Note that this class is necessary in order for the annotations to work.
  */
+/* Caches have to be invalidated before the session revisions are incremented. */
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
 public class CacheBustListener implements ApplicationListener<NovaEvent> {
 
 	@Autowired
@@ -17,114 +17,393 @@
  */
 package de.thm.arsnova.cache;
 
+import com.codahale.metrics.annotation.Gauge;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
 import de.thm.arsnova.events.*;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.interceptor.SimpleKey;
 import org.springframework.stereotype.Component;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 /**
  * This class is used to evict caches based on events. The events carry all necessary information to clear the
  * caches, e.g, for a specific session.
+ *
+ * The cache entries invalidated by an event are declared per event type in the constructor. Entries are either
+ * addressed by their exact keys or, if the keys cannot be derived from the event, matched by the session or content
+ * they belong to. Events which are not declared do not invalidate any cache entries. Every invalidated entry is
+ * counted per cache.
  */
 @Component
+@MonitorGauges
 public class CacheBuster implements ICacheBuster, NovaEventVisitor {
+	private static final String ANSWERS = "answers";
+	private static final String QUESTIONS = "questions";
+	private static final String SESSIONS = "sessions";
+	private static final String LEARNING_PROGRESS = "learningprogress";
+	private static final String STATISTICS = "statistics";
+
+	private final Map<Class<? extends NovaEvent>, List<Invalidation<?>>> invalidations = new HashMap<>();
+
+	private final Map<String, AtomicLong> invalidationCounts = new ConcurrentHashMap<>();
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	public CacheBuster() {
+		evictKeys(NewAnswerEvent.class, ANSWERS, e -> keys(e.getContent()));
+		evictKeys(DeleteAnswerEvent.class, ANSWERS, e -> keys(e.getQuestion()));
+		evictMatching(PiRoundResetEvent.class, ANSWERS, e -> contentWithId(e.getQuestionId()));
+
+		evictKeys(DeleteQuestionEvent.class, ANSWERS, e -> keys(e.getQuestion()));
+		evictKeys(DeleteQuestionEvent.class, QUESTIONS,
+				e -> keys(e.getQuestion() != null ? e.getQuestion().getId() : null));
+		evictMatching(DeleteAllQuestionsEvent.class, ANSWERS, e -> contentOfSession(e.getSession(), null));
+		evictMatching(DeleteAllQuestionsEvent.class, QUESTIONS, e -> contentOfSession(e.getSession(), null));
+
+		evictMatching(DeleteAllQuestionsAnswersEvent.class, ANSWERS, e -> contentOfSession(e.getSession(), null));
+		evictMatching(DeleteAllPreparationAnswersEvent.class, ANSWERS,
+				e -> contentOfSession(e.getSession(), "preparation"));
+		evictMatching(DeleteAllLectureAnswersEvent.class, ANSWERS, e -> contentOfSession(e.getSession(), "lecture"));
+
+		evictKeys(NewSessionEvent.class, STATISTICS, e -> keys(SimpleKey.EMPTY));
+		evictKeys(DeleteSessionEvent.class, STATISTICS, e -> keys(SimpleKey.EMPTY));
+		evictKeys(DeleteSessionEvent.class, SESSIONS, e -> e.getSession() != null
+				? keys(e.getSession().getId(), e.getSession().getKeyword()) : keys());
+		evictKeys(DeleteSessionEvent.class, LEARNING_PROGRESS, e -> keys(e.getSession()));
+		evictMatching(DeleteSessionEvent.class, ANSWERS, e -> contentOfSession(e.getSession(), null));
+		evictMatching(DeleteSessionEvent.class, QUESTIONS, e -> contentOfSession(e.getSession(), null));
+	}
+
+	/**
+	 * Returns the number of invalidated entries per cache.
+	 */
+	public Map<String, Long> getInvalidationCounts() {
+		final Map<String, Long> counts = new TreeMap<>();
+		for (final Map.Entry<String, AtomicLong> entry : invalidationCounts.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().get());
+		}
+
+		return counts;
+	}
+
+	@Gauge
+	public long cacheInvalidations() {
+		long count = 0;
+		for (final AtomicLong c : invalidationCounts.values()) {
+			count += c.get();
+		}
+
+		return count;
+	}
 
-	@CacheEvict(value = "statistics", allEntries = true)
 	@Override
-	public void visit(NewCommentEvent event) { }
+	public void visit(NewCommentEvent event) {
+		invalidate(event);
+	}
 
-	@CacheEvict(value = "statistics", allEntries = true)
 	@Override
-	public void visit(DeleteCommentEvent event) { }
+	public void visit(DeleteCommentEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(NewQuestionEvent event) { }
+	public void visit(NewQuestionEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(UnlockQuestionEvent event) { }
+	public void visit(NewQuestionsEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(UnlockQuestionsEvent newQuestionsEvent) { }
+	public void visit(UnlockQuestionEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(LockQuestionEvent lockQuestionEvent) { }
+	public void visit(UnlockQuestionsEvent newQuestionsEvent) {
+		invalidate(newQuestionsEvent);
+	}
 
 	@Override
-	public void visit(LockQuestionsEvent lockQuestionsEvent) { }
+	public void visit(LockQuestionEvent lockQuestionEvent) {
+		invalidate(lockQuestionEvent);
+	}
 
-	@CacheEvict(value = "answers", key = "#event.content")
 	@Override
-	public void visit(NewAnswerEvent event) { }
+	public void visit(LockQuestionsEvent lockQuestionsEvent) {
+		invalidate(lockQuestionsEvent);
+	}
 
 	@Override
-	public void visit(DeleteAnswerEvent event) { }
+	public void visit(NewAnswerEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(DeleteQuestionEvent event) { }
+	public void visit(DeleteAnswerEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(DeleteAllQuestionsEvent event) { }
+	public void visit(DeleteQuestionEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(DeleteAllQuestionsAnswersEvent event) { }
+	public void visit(DeleteAllQuestionsEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(DeleteAllPreparationAnswersEvent event) { }
+	public void visit(DeleteAllQuestionsAnswersEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(DeleteAllLectureAnswersEvent event) { }
+	public void visit(DeleteAllPreparationAnswersEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(NewFeedbackEvent event) { }
+	public void visit(DeleteAllLectureAnswersEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(DeleteFeedbackForSessionsEvent event) { }
+	public void visit(NewFeedbackEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(StatusSessionEvent event) { }
+	public void visit(DeleteFeedbackForSessionsEvent event) {
+		invalidate(event);
+	}
 
-	@CacheEvict(value = "statistics", allEntries = true)
 	@Override
-	public void visit(ChangeLearningProgressEvent changeLearningProgress) { }
+	public void visit(StatusSessionEvent event) {
+		invalidate(event);
+	}
 
 	@Override
-	public void visit(PiRoundDelayedStartEvent piRoundDelayedStartEvent) { }
+	public void visit(ChangeLearningProgressEvent changeLearningProgress) {
+		invalidate(changeLearningProgress);
+	}
 
 	@Override
-	public void visit(PiRoundEndEvent piRoundEndEvent) { }
+	public void visit(PiRoundDelayedStartEvent piRoundDelayedStartEvent) {
+		invalidate(piRoundDelayedStartEvent);
+	}
 
 	@Override
-	public void visit(PiRoundCancelEvent piRoundCancelEvent) { }
+	public void visit(PiRoundEndEvent piRoundEndEvent) {
+		invalidate(piRoundEndEvent);
+	}
 
 	@Override
-	public void visit(PiRoundResetEvent piRoundResetEvent) { }
+	public void visit(PiRoundCancelEvent piRoundCancelEvent) {
+		invalidate(piRoundCancelEvent);
+	}
 
-	@CacheEvict(value = "statistics", allEntries = true)
 	@Override
-	public void visit(NewSessionEvent newSessionEvent) { }
+	public void visit(PiRoundResetEvent piRoundResetEvent) {
+		invalidate(piRoundResetEvent);
+	}
 
-	@CacheEvict(value = "statistics", allEntries = true)
 	@Override
-	public void visit(DeleteSessionEvent deleteSessionEvent) { }
+	public void visit(NewSessionEvent newSessionEvent) {
+		invalidate(newSessionEvent);
+	}
 
 	@Override
-	public void visit(LockVoteEvent lockVoteEvent) { }
+	public void visit(DeleteSessionEvent deleteSessionEvent) {
+		invalidate(deleteSessionEvent);
+	}
 
 	@Override
-	public void visit(LockVotesEvent lockVotesEvent) { }
+	public void visit(LockVoteEvent lockVoteEvent) {
+		invalidate(lockVoteEvent);
+	}
 
 	@Override
-	public void visit(UnlockVoteEvent unlockVoteEvent) { }
+	public void visit(LockVotesEvent lockVotesEvent) {
+		invalidate(lockVotesEvent);
+	}
 
 	@Override
-	public void visit(UnlockVotesEvent unlockVotesEvent) { }
+	public void visit(UnlockVoteEvent unlockVoteEvent) {
+		invalidate(unlockVoteEvent);
+	}
 
 	@Override
-	public void visit(FeatureChangeEvent featureChangeEvent) { }
+	public void visit(UnlockVotesEvent unlockVotesEvent) {
+		invalidate(unlockVotesEvent);
+	}
 
 	@Override
-	public void visit(LockFeedbackEvent lockFeedbackEvent) { }
+	public void visit(FeatureChangeEvent featureChangeEvent) {
+		invalidate(featureChangeEvent);
+	}
 
 	@Override
-	public void visit(FlipFlashcardsEvent flipFlashcardsEvent) { }
+	public void visit(LockFeedbackEvent lockFeedbackEvent) {
+		invalidate(lockFeedbackEvent);
+	}
 
+	@Override
+	public void visit(FlipFlashcardsEvent flipFlashcardsEvent) {
+		invalidate(flipFlashcardsEvent);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void invalidate(final NovaEvent event) {
+		final List<Invalidation<?>> eventInvalidations = invalidations.get(event.getClass());
+		if (eventInvalidations == null) {
+			return;
+		}
+		for (final Invalidation<?> invalidation : eventInvalidations) {
+			final Cache cache = cacheManager.getCache(invalidation.cacheName);
+			if (cache == null) {
+				continue;
+			}
+			final int count = ((Invalidation<NovaEvent>) invalidation).apply(event, cache);
+			if (count > 0) {
+				getInvalidationCount(invalidation.cacheName).addAndGet(count);
+			}
+		}
+	}
+
+	private AtomicLong getInvalidationCount(final String cacheName) {
+		AtomicLong count = invalidationCounts.get(cacheName);
+		if (count == null) {
+			count = new AtomicLong();
+			final AtomicLong existing = invalidationCounts.putIfAbsent(cacheName, count);
+			if (existing != null) {
+				count = existing;
+			}
+		}
+
+		return count;
+	}
+
+	private <E extends NovaEvent> void evictKeys(final Class<E> eventType, final String cacheName,
+			final Function<E, Collection<?>> keys) {
+		register(eventType, new Invalidation<>(cacheName, keys, null));
+	}
+
+	private <E extends NovaEvent> void evictMatching(final Class<E> eventType, final String cacheName,
+			final Function<E, BiPredicate<Object, Object>> matcher) {
+		register(eventType, new Invalidation<>(cacheName, null, matcher));
+	}
+
+	private void register(final Class<? extends NovaEvent> eventType, final Invalidation<?> invalidation) {
+		List<Invalidation<?>> eventInvalidations = invalidations.get(eventType);
+		if (eventInvalidations == null) {
+			eventInvalidations = new ArrayList<>();
+			invalidations.put(eventType, eventInvalidations);
+		}
+		eventInvalidations.add(invalidation);
+	}
+
+	private static Collection<?> keys(final Object... keys) {
+		return keys.length == 0 ? Collections.emptyList() : Arrays.asList(keys);
+	}
+
+	/**
+	 * Matches entries which are keyed by or contain a content of the session. If a variant is passed, only content of
+	 * this variant is matched.
+	 */
+	private static BiPredicate<Object, Object> contentOfSession(final Session session, final String variant) {
+		if (session == null || session.getId() == null) {
+			return null;
+		}
+
+		return (key, value) -> {
+			final Object content = key instanceof Content ? key : value;
+			if (!(content instanceof Content)) {
+				return false;
+			}
+
+			return session.getId().equals(((Content) content).getSessionId())
+					&& (variant == null || variant.equals(((Content) content).getQuestionVariant()));
+		};
+	}
+
+	/**
+	 * Matches entries which are keyed by the content with the ID.
+	 */
+	private static BiPredicate<Object, Object> contentWithId(final String contentId) {
+		if (contentId == null) {
+			return null;
+		}
+
+		return (key, value) -> key instanceof Content && contentId.equals(((Content) key).getId());
+	}
+
+	private static class Invalidation<E extends NovaEvent> {
+		private final String cacheName;
+		private final Function<E, Collection<?>> keys;
+		private final Function<E, BiPredicate<Object, Object>> matcher;
+
+		private Invalidation(final String cacheName, final Function<E, Collection<?>> keys,
+				final Function<E, BiPredicate<Object, Object>> matcher) {
+			this.cacheName = cacheName;
+			this.keys = keys;
+			this.matcher = matcher;
+		}
+
+		/**
+		 * Evicts the entries addressed by the event.
+		 *
+		 * @return the number of evicted entries
+		 */
+		private int apply(final E event, final Cache cache) {
+			if (keys != null) {
+				int count = 0;
+				for (final Object key : keys.apply(event)) {
+					if (key == null) {
+						continue;
+					}
+					if (cache instanceof BoundedCache) {
+						if (((BoundedCache) cache).evictIfPresent(key)) {
+							count++;
+						}
+					} else {
+						cache.evict(key);
+						count++;
+					}
+				}
+
+				return count;
+			}
+			final BiPredicate<Object, Object> predicate = matcher.apply(event);
+			if (predicate == null) {
+				return 0;
+			}
+			if (cache instanceof BoundedCache) {
+				return ((BoundedCache) cache).evictIf(predicate);
+			}
+			cache.clear();
+
+			return 1;
+		}
+	}
 }
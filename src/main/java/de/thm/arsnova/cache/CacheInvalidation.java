@@ -0,0 +1,63 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import java.io.Serializable;
+
+/**
+ * A message sent through the {@link SharedCacheTier} to invalidate an entry or all entries of a cache in the near
+ * caches of all other nodes.
+ */
+public class CacheInvalidation implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final String origin;
+	private final String cacheName;
+	private final Object key;
+
+	/**
+	 * @param origin ID of the sending node
+	 * @param key key of the invalidated entry or <code>null</code> if all entries are invalidated
+	 */
+	public CacheInvalidation(final String origin, final String cacheName, final Object key) {
+		this.origin = origin;
+		this.cacheName = cacheName;
+		this.key = key;
+	}
+
+	public String getOrigin() {
+		return origin;
+	}
+
+	public String getCacheName() {
+		return cacheName;
+	}
+
+	public Object getKey() {
+		return key;
+	}
+
+	public boolean isClear() {
+		return key == null;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheInvalidation [origin=" + origin + ", cacheName=" + cacheName + ", key=" + key + "]";
+	}
+}
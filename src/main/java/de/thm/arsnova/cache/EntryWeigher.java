@@ -0,0 +1,70 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Weighs cache entries by the approximate number of bytes of their JSON representation. This way, entries containing
+ * images, e.g., contents with embedded image data, are considered heavier than plain entries. Entries which cannot be
+ * serialized get a default weight.
+ */
+public class EntryWeigher implements Weigher<Object, Object> {
+	private static final int ENTRY_OVERHEAD = 64;
+	private static final int DEFAULT_WEIGHT = 1024;
+
+	private static final Logger logger = LoggerFactory.getLogger(EntryWeigher.class);
+
+	private final ObjectMapper objectMapper = new ObjectMapper()
+			.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+			.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+
+	@Override
+	public int weigh(final Object key, final Object value) {
+		return ENTRY_OVERHEAD + estimateSize(key) + estimateSize(value);
+	}
+
+	private int estimateSize(final Object object) {
+		if (object == null) {
+			return 0;
+		}
+		if (object instanceof String) {
+			return ((String) object).length();
+		}
+		final CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+		try {
+			objectMapper.writeValue(out, object);
+
+			return (int) Math.min(Integer.MAX_VALUE / 2, out.getCount());
+		} catch (final IOException | RuntimeException e) {
+			logger.debug("Could not estimate size of {}.", object.getClass().getName(), e);
+
+			return DEFAULT_WEIGHT;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * A {@link SharedCacheTier} which keeps its entries in memory and delivers invalidations synchronously to the
+ * listeners within the same JVM. It can be shared by several cache managers to simulate multiple nodes, e.g., for
+ * tests, but it does not share any data between processes. The number of entries is not bounded and expired entries
+ * are only removed when they are read.
+ */
+public class InProcessSharedCacheTier implements SharedCacheTier {
+	private static final Logger logger = LoggerFactory.getLogger(InProcessSharedCacheTier.class);
+
+	private final ConcurrentMap<String, ConcurrentMap<Object, Entry>> caches = new ConcurrentHashMap<>();
+	private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public Object get(final String cacheName, final Object key) {
+		final ConcurrentMap<Object, Entry> cache = caches.get(cacheName);
+		if (cache == null) {
+			return null;
+		}
+		final Entry entry = cache.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expiresAt <= System.currentTimeMillis()) {
+			cache.remove(key, entry);
+
+			return null;
+		}
+
+		return entry.value;
+	}
+
+	@Override
+	public void put(final String cacheName, final Object key, final Object value, final long timeToLiveMs) {
+		final long expiresAt = timeToLiveMs > 0 ? System.currentTimeMillis() + timeToLiveMs : Long.MAX_VALUE;
+		getCache(cacheName).put(key, new Entry(value, expiresAt));
+	}
+
+	@Override
+	public void evict(final String cacheName, final Object key) {
+		final ConcurrentMap<Object, Entry> cache = caches.get(cacheName);
+		if (cache != null) {
+			cache.remove(key);
+		}
+	}
+
+	@Override
+	public Collection<Object> evictIf(final String cacheName, final BiPredicate<Object, Object> predicate) {
+		final List<Object> keys = new ArrayList<>();
+		final ConcurrentMap<Object, Entry> cache = caches.get(cacheName);
+		if (cache == null) {
+			return keys;
+		}
+		for (final Map.Entry<Object, Entry> mapEntry : cache.entrySet()) {
+			if (predicate.test(mapEntry.getKey(), mapEntry.getValue().value)
+					&& cache.remove(mapEntry.getKey(), mapEntry.getValue())) {
+				keys.add(mapEntry.getKey());
+			}
+		}
+
+		return keys;
+	}
+
+	@Override
+	public void clear(final String cacheName) {
+		caches.remove(cacheName);
+	}
+
+	@Override
+	public void broadcast(final CacheInvalidation invalidation) {
+		for (final Consumer<CacheInvalidation> listener : listeners) {
+			try {
+				listener.accept(invalidation);
+			} catch (final RuntimeException e) {
+				logger.error("Could not deliver {}.", invalidation, e);
+			}
+		}
+	}
+
+	@Override
+	public void subscribe(final Consumer<CacheInvalidation> listener) {
+		listeners.add(listener);
+	}
+
+	private ConcurrentMap<Object, Entry> getCache(final String cacheName) {
+		ConcurrentMap<Object, Entry> cache = caches.get(cacheName);
+		if (cache == null) {
+			cache = new ConcurrentHashMap<>();
+			final ConcurrentMap<Object, Entry> existing = caches.putIfAbsent(cacheName, cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+
+		return cache;
+	}
+
+	private static final class Entry {
+		private final Object value;
+		private final long expiresAt;
+
+		private Entry(final Object value, final long expiresAt) {
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
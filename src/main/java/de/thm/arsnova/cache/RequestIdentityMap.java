@@ -0,0 +1,121 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import com.codahale.metrics.annotation.Gauge;
+import org.springframework.stereotype.Component;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the entities loaded by repositories during a single HTTP request or socket event, so repeated lookups of the
+ * same entity are served without hitting the cache or the database again. The map is bound to the current thread
+ * between {@link #open()} and {@link #close()}. Outside of this scope, lookups always miss and nothing is stored.
+ */
+@Component
+@MonitorGauges
+public class RequestIdentityMap {
+	private final ThreadLocal<Scope> scope = new ThreadLocal<>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Binds a map to the current thread. Nested calls reuse the map which is bound already.
+	 */
+	public void open() {
+		final Scope current = scope.get();
+		if (current != null) {
+			current.depth++;
+		} else {
+			scope.set(new Scope());
+		}
+	}
+
+	/**
+	 * Discards the map bound to the current thread once the outermost scope is closed.
+	 */
+	public void close() {
+		final Scope current = scope.get();
+		if (current != null && --current.depth == 0) {
+			scope.remove();
+		}
+	}
+
+	/**
+	 * Returns the entity of the given type stored for the key or <code>null</code> if it has not been loaded within the
+	 * current scope.
+	 */
+	public <T> T get(final Class<T> type, final String key) {
+		final Scope current = scope.get();
+		if (current == null) {
+			return null;
+		}
+		final Map<String, Object> entities = current.entities.get(type);
+		final Object entity = entities != null ? entities.get(key) : null;
+		if (entity == null) {
+			misses.incrementAndGet();
+
+			return null;
+		}
+		hits.incrementAndGet();
+
+		return type.cast(entity);
+	}
+
+	public void put(final Class<?> type, final String key, final Object entity) {
+		final Scope current = scope.get();
+		if (current == null || key == null || entity == null) {
+			return;
+		}
+		Map<String, Object> entities = current.entities.get(type);
+		if (entities == null) {
+			entities = new HashMap<>();
+			current.entities.put(type, entities);
+		}
+		entities.put(key, entity);
+	}
+
+	/**
+	 * Removes all entities of the given type from the current scope.
+	 */
+	public void evict(final Class<?> type) {
+		final Scope current = scope.get();
+		if (current != null) {
+			current.entities.remove(type);
+		}
+	}
+
+	@Gauge
+	public long requestIdentityMapHits() {
+		return hits.get();
+	}
+
+	@Gauge
+	public long requestIdentityMapMisses() {
+		return misses.get();
+	}
+
+	private static class Scope {
+		private final Map<Class<?>, Map<String, Object>> entities = new HashMap<>();
+		private int depth = 1;
+	}
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.cache.CacheBuilder;
+import de.thm.arsnova.entities.Content;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the content lists of a session as a single snapshot in the <code>sessioncontents</code> cache keyed by the
+ * session's ID. All lists of a session are loaded together and changes to a session's content only invalidate the
+ * snapshot of this session. Hits and misses are counted per session for a bounded number of recently read sessions.
+ */
+@Component
+@MonitorGauges
+public class SessionContentCache {
+	public static final String CACHE_NAME = "sessioncontents";
+
+	private static final int STATISTICS_SIZE = 10000;
+
+	/* Statistics are only kept for recently read sessions. */
+	private final com.google.common.cache.Cache<String, Statistics> statistics = CacheBuilder.newBuilder()
+			.maximumSize(STATISTICS_SIZE)
+			.build();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private SessionRevisionTracker sessionRevisionTracker;
+
+	/**
+	 * Returns a content list from the cached snapshot of the session. The snapshot is loaded if it is not cached yet.
+	 *
+	 * @param sessionId database ID of the session
+	 * @param list name of the list, e.g., the content variant
+	 * @param loader loads all content lists of the session on a cache miss
+	 * @return the unmodifiable list or an empty list if the snapshot does not contain the list
+	 */
+	public List<Content> get(final String sessionId, final String list,
+			final Supplier<Map<String, List<Content>>> loader) {
+		final Statistics sessionStatistics = getStatistics(sessionId);
+		final AtomicBoolean loaded = new AtomicBoolean();
+		/* Concurrent misses for the same session wait for a single load. */
+		final SessionContents contents;
+		try {
+			contents = getCache().get(sessionId, () -> {
+				loaded.set(true);
+
+				return new SessionContents(loader.get());
+			});
+		} catch (final Cache.ValueRetrievalException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+		if (loaded.get()) {
+			misses.incrementAndGet();
+			sessionStatistics.misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+			sessionStatistics.hits.incrementAndGet();
+		}
+		final List<Content> result = contents.lists.get(list);
+
+		return result != null ? result : Collections.<Content>emptyList();
+	}
+
+	/**
+	 * Invalidates all cached content lists of the session. This method is called for every change of the session's
+	 * content, so the session's content revision is incremented as well.
+	 */
+	public void evict(final String sessionId) {
+		getCache().evict(sessionId);
+		sessionRevisionTracker.increment(sessionId, SessionRevisionTracker.Scope.CONTENT);
+	}
+
+	/**
+	 * Invalidates the cached content lists of all sessions and resets the statistics.
+	 */
+	public void clear() {
+		getCache().clear();
+		statistics.invalidateAll();
+	}
+
+	public long getHitCount(final String sessionId) {
+		final Statistics s = statistics.getIfPresent(sessionId);
+
+		return s == null ? 0 : s.hits.get();
+	}
+
+	public long getMissCount(final String sessionId) {
+		final Statistics s = statistics.getIfPresent(sessionId);
+
+		return s == null ? 0 : s.misses.get();
+	}
+
+	@Gauge
+	public long sessionContentCacheHits() {
+		return hits.get();
+	}
+
+	@Gauge
+	public long sessionContentCacheMisses() {
+		return misses.get();
+	}
+
+	private Statistics getStatistics(final String sessionId) {
+		Statistics s = statistics.getIfPresent(sessionId);
+		if (s == null) {
+			s = new Statistics();
+			final Statistics existing = statistics.asMap().putIfAbsent(sessionId, s);
+			if (existing != null) {
+				s = existing;
+			}
+		}
+
+		return s;
+	}
+
+	private Cache getCache() {
+		return cacheManager.getCache(CACHE_NAME);
+	}
+
+	private static class SessionContents {
+		private final Map<String, List<Content>> lists;
+
+		private SessionContents(final Map<String, List<Content>> lists) {
+			final Map<String, List<Content>> copy = new HashMap<>();
+			for (final Map.Entry<String, List<Content>> entry : lists.entrySet()) {
+				copy.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+			}
+			this.lists = Collections.unmodifiableMap(copy);
+		}
+	}
+
+	private static class Statistics {
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+	}
+}
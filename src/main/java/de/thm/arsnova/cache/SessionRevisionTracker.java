@@ -0,0 +1,312 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keeps monotonically increasing revisions of a session's data which are bumped by ARSnova's events. The revisions
+ * are used to build ETags for read endpoints. Since revisions are kept in memory only, they are combined with the
+ * time of the application's start so revisions from before a restart are never considered current.
+ *
+ * Events are only published on the node where the change happened. Revision bumps are therefore broadcast to the
+ * other nodes through the {@link SharedCacheTier}, so none of them answers a conditional request for changed data with
+ * <code>304 Not Modified</code>.
+ */
+/* A new revision must not be handed out while the CacheBuster has not yet invalidated the stale cache entries. */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class SessionRevisionTracker implements ApplicationListener<NovaEvent>, NovaEventVisitor {
+	public enum Scope {
+		CONTENT,
+		COMMENTS,
+		ANSWERS,
+		FEATURES
+	}
+
+	private static final String CACHE_NAME = "sessionRevisions";
+	private static final String KEY_SEPARATOR = ":";
+	private static final String SCOPE_SEPARATOR = ",";
+
+	@Autowired(required = false)
+	private SharedCacheTier sharedTier;
+
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final long epoch = System.currentTimeMillis();
+
+	private final Map<String, AtomicLongArray> revisions = new ConcurrentHashMap<>();
+
+	@PostConstruct
+	public void init() {
+		if (sharedTier != null) {
+			sharedTier.subscribe(this::onInvalidation);
+		}
+	}
+
+	/**
+	 * Returns a version string for the given scopes of the session's data. The string changes whenever the data of one
+	 * of the scopes changes.
+	 *
+	 * @param sessionId database ID of the session
+	 */
+	public String getRevision(final String sessionId, final Scope... scopes) {
+		final AtomicLongArray sessionRevisions = revisions.get(sessionId);
+		final StringBuilder revision = new StringBuilder(Long.toString(epoch, 36));
+		for (final Scope scope : scopes) {
+			revision.append('.').append(sessionRevisions == null ? 0 : sessionRevisions.get(scope.ordinal()));
+		}
+
+		return revision.toString();
+	}
+
+	/**
+	 * Bumps the revisions of the given scopes of the session's data on all nodes.
+	 *
+	 * @param sessionId database ID of the session
+	 */
+	public void increment(final String sessionId, final Scope... scopes) {
+		incrementLocally(sessionId, scopes);
+		if (sharedTier != null) {
+			final StringBuilder key = new StringBuilder(sessionId).append(KEY_SEPARATOR);
+			for (int i = 0; i < scopes.length; i++) {
+				key.append(i == 0 ? "" : SCOPE_SEPARATOR).append(scopes[i].name());
+			}
+			sharedTier.broadcast(new CacheInvalidation(nodeId, CACHE_NAME, key.toString()));
+		}
+	}
+
+	private void incrementLocally(final String sessionId, final Scope... scopes) {
+		AtomicLongArray sessionRevisions = revisions.get(sessionId);
+		if (sessionRevisions == null) {
+			sessionRevisions = new AtomicLongArray(Scope.values().length);
+			final AtomicLongArray existing = revisions.putIfAbsent(sessionId, sessionRevisions);
+			if (existing != null) {
+				sessionRevisions = existing;
+			}
+		}
+		for (final Scope scope : scopes) {
+			sessionRevisions.incrementAndGet(scope.ordinal());
+		}
+	}
+
+	private void onInvalidation(final CacheInvalidation invalidation) {
+		if (nodeId.equals(invalidation.getOrigin()) || !CACHE_NAME.equals(invalidation.getCacheName())) {
+			return;
+		}
+		if (invalidation.isClear()) {
+			/* The revisions of all sessions have to change. */
+			for (final AtomicLongArray sessionRevisions : revisions.values()) {
+				for (final Scope scope : Scope.values()) {
+					sessionRevisions.incrementAndGet(scope.ordinal());
+				}
+			}
+			return;
+		}
+		final String key = invalidation.getKey().toString();
+		final int separator = key.lastIndexOf(KEY_SEPARATOR);
+		if (separator < 0) {
+			return;
+		}
+		final String[] scopeNames = key.substring(separator + 1).split(SCOPE_SEPARATOR);
+		final Scope[] scopes = new Scope[scopeNames.length];
+		for (int i = 0; i < scopeNames.length; i++) {
+			scopes[i] = Scope.valueOf(scopeNames[i]);
+		}
+		incrementLocally(key.substring(0, separator), scopes);
+	}
+
+	@Override
+	public void onApplicationEvent(final NovaEvent event) {
+		event.accept(this);
+	}
+
+	private void increment(final Session session, final Scope... scopes) {
+		if (session != null) {
+			increment(session.getId(), scopes);
+		}
+	}
+
+	@Override
+	public void visit(NewCommentEvent event) {
+		increment(event.getSession(), Scope.COMMENTS);
+	}
+
+	@Override
+	public void visit(DeleteCommentEvent event) {
+		increment(event.getSession(), Scope.COMMENTS);
+	}
+
+	@Override
+	public void visit(NewQuestionEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(NewQuestionsEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(UnlockQuestionEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(UnlockQuestionsEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(LockQuestionEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(LockQuestionsEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(NewAnswerEvent event) {
+		increment(event.getSession(), Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(DeleteAnswerEvent event) {
+		increment(event.getSession(), Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(DeleteQuestionEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(DeleteAllQuestionsEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(DeleteAllQuestionsAnswersEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(DeleteAllPreparationAnswersEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(DeleteAllLectureAnswersEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(NewFeedbackEvent event) { }
+
+	@Override
+	public void visit(DeleteFeedbackForSessionsEvent event) { }
+
+	@Override
+	public void visit(StatusSessionEvent event) {
+		increment(event.getSession(), Scope.FEATURES);
+	}
+
+	@Override
+	public void visit(ChangeLearningProgressEvent event) {
+		increment(event.getSession(), Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(PiRoundDelayedStartEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(PiRoundEndEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(PiRoundCancelEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(PiRoundResetEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Override
+	public void visit(NewSessionEvent event) { }
+
+	@Override
+	public void visit(DeleteSessionEvent event) {
+		if (event.getSession() != null) {
+			revisions.remove(event.getSession().getId());
+		}
+	}
+
+	@Override
+	public void visit(LockVoteEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(LockVotesEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(UnlockVoteEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(UnlockVotesEvent event) {
+		increment(event.getSession(), Scope.CONTENT);
+	}
+
+	@Override
+	public void visit(FeatureChangeEvent event) {
+		increment(event.getSession(), Scope.FEATURES);
+	}
+
+	@Override
+	public void visit(LockFeedbackEvent event) {
+		increment(event.getSession(), Scope.FEATURES);
+	}
+
+	@Override
+	public void visit(FlipFlashcardsEvent event) {
+		increment(event.getSession(), Scope.CONTENT, Scope.FEATURES);
+	}
+}
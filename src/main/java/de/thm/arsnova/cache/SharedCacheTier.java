@@ -0,0 +1,66 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import java.util.Collection;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * A cache tier shared by all backend nodes. It stores the values of caches which are configured to be shared and
+ * delivers invalidation messages between the nodes, so each node can drop stale entries of its local near cache.
+ *
+ * Implementations which are accessed over the network have to serialize keys and values. Values are passed as stored
+ * by {@link BoundedCache}, i.e., <code>null</code> values are represented by
+ * {@link org.springframework.cache.support.NullValue}.
+ */
+public interface SharedCacheTier {
+	/**
+	 * Returns the stored value or <code>null</code> if there is no valid entry for the key.
+	 */
+	Object get(String cacheName, Object key);
+
+	/**
+	 * Stores a value.
+	 *
+	 * @param timeToLiveMs lifetime of the entry, 0 if it does not expire
+	 */
+	void put(String cacheName, Object key, Object value, long timeToLiveMs);
+
+	void evict(String cacheName, Object key);
+
+	/**
+	 * Evicts all entries for which the predicate matches the key or the value. This operation has to scan all entries
+	 * of the cache.
+	 *
+	 * @return the keys of the evicted entries
+	 */
+	Collection<Object> evictIf(String cacheName, BiPredicate<Object, Object> predicate);
+
+	void clear(String cacheName);
+
+	/**
+	 * Sends the invalidation to all nodes including the sending node.
+	 */
+	void broadcast(CacheInvalidation invalidation);
+
+	/**
+	 * Registers a listener for the invalidations sent by any node.
+	 */
+	void subscribe(Consumer<CacheInvalidation> listener);
+}
@@ -21,6 +21,9 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import de.thm.arsnova.ImageUtils;
+import de.thm.arsnova.cache.BoundedCacheManager;
+import de.thm.arsnova.cache.InProcessSharedCacheTier;
+import de.thm.arsnova.cache.SharedCacheTier;
 import de.thm.arsnova.connector.client.ConnectorClient;
 import de.thm.arsnova.connector.client.ConnectorClientImpl;
 import de.thm.arsnova.entities.*;
@@ -36,16 +39,16 @@ import de.thm.arsnova.socket.ARSnovaSocketListener;
 import de.thm.arsnova.web.CacheControlInterceptorHandler;
 import de.thm.arsnova.web.CorsFilter;
 import de.thm.arsnova.web.DeprecatedApiInterceptorHandler;
+import de.thm.arsnova.web.RequestIdentityMapInterceptorHandler;
 import de.thm.arsnova.web.ResponseInterceptorHandler;
+import de.thm.arsnova.web.SessionRevisionETagInterceptorHandler;
 import org.ektorp.CouchDbConnector;
 import org.ektorp.impl.StdCouchDbInstance;
 import org.ektorp.spring.HttpClientFactoryBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.PropertiesFactoryBean;
-import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.AdviceMode;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
@@ -148,9 +151,11 @@ public class AppConfig extends WebMvcConfigurerAdapter {
 
 	@Override
 	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(requestIdentityMapInterceptorHandler());
 		registry.addInterceptor(cacheControlInterceptorHandler());
 		registry.addInterceptor(deprecatedApiInterceptorHandler());
 		registry.addInterceptor(responseInterceptorHandler());
+		registry.addInterceptor(sessionRevisionETagInterceptorHandler());
 	}
 
 	@Override
@@ -168,11 +173,21 @@ public class AppConfig extends WebMvcConfigurerAdapter {
 		return new DeprecatedApiInterceptorHandler();
 	}
 
+	@Bean
+	public RequestIdentityMapInterceptorHandler requestIdentityMapInterceptorHandler() {
+		return new RequestIdentityMapInterceptorHandler();
+	}
+
 	@Bean
 	public ResponseInterceptorHandler responseInterceptorHandler() {
 		return new ResponseInterceptorHandler();
 	}
 
+	@Bean
+	public SessionRevisionETagInterceptorHandler sessionRevisionETagInterceptorHandler() {
+		return new SessionRevisionETagInterceptorHandler();
+	}
+
 	@Bean
 	public StringHttpMessageConverter stringMessageConverter() {
 		StringHttpMessageConverter messageConverter = new StringHttpMessageConverter();
@@ -276,9 +291,18 @@ public class AppConfig extends WebMvcConfigurerAdapter {
 		return new ARSnovaSocketListener();
 	}
 
+	/**
+	 * The shared tier is only used for caches listed in <code>cache.shared.names</code>. The in-process implementation
+	 * does not share data between nodes. Replace this bean for multi-node deployments.
+	 */
+	@Bean
+	public SharedCacheTier sharedCacheTier() {
+		return new InProcessSharedCacheTier();
+	}
+
 	@Bean
-	public CacheManager cacheManager() {
-		return new ConcurrentMapCacheManager();
+	public BoundedCacheManager cacheManager() {
+		return new BoundedCacheManager(env, sharedCacheTier());
 	}
 
 	@Bean
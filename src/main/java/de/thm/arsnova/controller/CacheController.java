@@ -0,0 +1,70 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.controller;
+
+import de.thm.arsnova.entities.CacheStatistics;
+import de.thm.arsnova.services.ICacheAdminService;
+import de.thm.arsnova.web.CacheControl;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Allows administrators to manage the application's caches.
+ */
+@RestController
+@RequestMapping("/cache")
+@Api(value = "/cache", description = "the Cache API")
+public class CacheController extends AbstractController {
+	@Autowired
+	private ICacheAdminService cacheAdminService;
+
+	@ApiOperation(value = "Evicts all cached data of a session",
+			nickname = "evictSession")
+	@RequestMapping(value = "/session/{sessionkey}", method = RequestMethod.DELETE)
+	public void evictSession(@ApiParam(value = "Session-Key of the session", required = true) @PathVariable final String sessionkey) {
+		cacheAdminService.evictSession(sessionkey);
+	}
+
+	@ApiOperation(value = "Retrieves usage statistics of all caches",
+			nickname = "getCacheStatistics")
+	@RequestMapping(value = "/statistics", method = RequestMethod.GET)
+	@CacheControl(noCache = true)
+	public List<CacheStatistics> getStatistics(
+			@ApiParam(value = "number of top keys to report per cache", required = false)
+			@RequestParam(value = "topkeys", defaultValue = "10") final int topKeys) {
+		return cacheAdminService.getStatistics(topKeys);
+	}
+
+	@ApiOperation(value = "Retrieves the content cache hits and misses of a session",
+			nickname = "getSessionCacheStatistics")
+	@RequestMapping(value = "/session/{sessionkey}/statistics", method = RequestMethod.GET)
+	@CacheControl(noCache = true)
+	public CacheStatistics getSessionStatistics(
+			@ApiParam(value = "Session-Key of the session", required = true) @PathVariable final String sessionkey) {
+		return cacheAdminService.getSessionStatistics(sessionkey);
+	}
+}
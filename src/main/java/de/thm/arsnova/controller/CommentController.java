@@ -17,12 +17,14 @@
  */
 package de.thm.arsnova.controller;
 
+import de.thm.arsnova.cache.SessionRevisionTracker;
 import de.thm.arsnova.entities.CommentReadingCount;
 import de.thm.arsnova.entities.transport.Comment;
 import de.thm.arsnova.exceptions.BadRequestException;
 import de.thm.arsnova.services.IContentService;
 import de.thm.arsnova.web.DeprecatedApi;
 import de.thm.arsnova.web.Pagination;
+import de.thm.arsnova.web.SessionRevisionETag;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -56,6 +58,7 @@ public class CommentController extends PaginationController {
 	@RequestMapping(value = "/count", method = RequestMethod.GET)
 	@DeprecatedApi
 	@Deprecated
+	@SessionRevisionETag(SessionRevisionTracker.Scope.COMMENTS)
 	public int getInterposedCount(@ApiParam(value = "Session-Key from current session", required = true) @RequestParam final String sessionkey) {
 		return contentService.getInterposedCount(sessionkey);
 	}
@@ -65,6 +68,7 @@ public class CommentController extends PaginationController {
 	@RequestMapping(value = "/readcount", method = RequestMethod.GET)
 	@DeprecatedApi
 	@Deprecated
+	@SessionRevisionETag(SessionRevisionTracker.Scope.COMMENTS)
 	public CommentReadingCount getUnreadInterposedCount(@ApiParam(value = "Session-Key from current session", required = true) @RequestParam("sessionkey") final String sessionkey, String user) {
 		return contentService.getInterposedReadingCount(sessionkey, user);
 	}
@@ -72,6 +76,7 @@ public class CommentController extends PaginationController {
 	@ApiOperation(value = "Retrieves all Comments for a Session",
 			nickname = "getInterposedQuestions")
 	@RequestMapping(value = "/", method = RequestMethod.GET)
+	@SessionRevisionETag(SessionRevisionTracker.Scope.COMMENTS)
 	@Pagination
 	public List<Comment> getInterposedQuestions(@ApiParam(value = "Session-Key from current session", required = true) @RequestParam final String sessionkey) {
 		return Comment.fromList(contentService.getInterposedQuestions(sessionkey, offset, limit));
@@ -18,6 +18,7 @@
 package de.thm.arsnova.controller;
 
 import de.thm.arsnova.PaginationListDecorator;
+import de.thm.arsnova.cache.SessionRevisionTracker;
 import de.thm.arsnova.entities.Answer;
 import de.thm.arsnova.entities.Content;
 import de.thm.arsnova.exceptions.BadRequestException;
@@ -27,6 +28,7 @@ import de.thm.arsnova.exceptions.NotFoundException;
 import de.thm.arsnova.services.IContentService;
 import de.thm.arsnova.web.DeprecatedApi;
 import de.thm.arsnova.web.Pagination;
+import de.thm.arsnova.web.SessionRevisionETag;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -92,10 +94,8 @@ public class ContentController extends PaginationController {
 	@RequestMapping(value = "/bulk", method = RequestMethod.POST)
 	@ResponseStatus(HttpStatus.CREATED)
 	public List<Content> bulkPostQuestions(@RequestBody final List<Content> contents) {
-		for (final Content content : contents) {
-			if (contentService.saveQuestion(content) == null) {
-				throw new BadRequestException();
-			}
+		if (contentService.saveQuestions(contents).size() != contents.size()) {
+			throw new BadRequestException();
 		}
 		return contents;
 	}
@@ -274,6 +274,7 @@ public class ContentController extends PaginationController {
 	@ApiOperation(value = "Get skill questions",
 			nickname = "getSkillQuestions")
 	@RequestMapping(value = "/", method = RequestMethod.GET)
+	@SessionRevisionETag(SessionRevisionTracker.Scope.CONTENT)
 	@Pagination
 	public List<Content> getSkillQuestions(
 			@RequestParam final String sessionkey,
@@ -329,6 +330,7 @@ public class ContentController extends PaginationController {
 	@DeprecatedApi
 	@Deprecated
 	@RequestMapping(value = "/count", method = RequestMethod.GET)
+	@SessionRevisionETag(SessionRevisionTracker.Scope.CONTENT)
 	public int getSkillQuestionCount(
 			@RequestParam final String sessionkey,
 			@RequestParam(value = "lecturequestionsonly", defaultValue = "false") final boolean lectureQuestionsOnly,
@@ -596,6 +598,7 @@ public class ContentController extends PaginationController {
 	@DeprecatedApi
 	@Deprecated
 	@RequestMapping(value = "/answercount", method = RequestMethod.GET)
+	@SessionRevisionETag({SessionRevisionTracker.Scope.CONTENT, SessionRevisionTracker.Scope.ANSWERS})
 	public int getTotalAnswerCount(
 			@RequestParam final String sessionkey,
 			@RequestParam(value = "lecturequestionsonly", defaultValue = "false") final boolean lectureQuestionsOnly,
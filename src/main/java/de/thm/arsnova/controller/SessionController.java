@@ -17,6 +17,7 @@
  */
 package de.thm.arsnova.controller;
 
+import de.thm.arsnova.cache.SessionRevisionTracker;
 import de.thm.arsnova.connector.model.Course;
 import de.thm.arsnova.entities.Session;
 import de.thm.arsnova.entities.SessionFeature;
@@ -26,12 +27,9 @@ import de.thm.arsnova.entities.transport.LearningProgressValues;
 import de.thm.arsnova.exceptions.UnauthorizedException;
 import de.thm.arsnova.services.ISessionService;
 import de.thm.arsnova.services.IUserService;
-import de.thm.arsnova.services.SessionService.SessionInfoNameComparator;
-import de.thm.arsnova.services.SessionService.SessionInfoShortNameComparator;
-import de.thm.arsnova.services.SessionService.SessionNameComparator;
-import de.thm.arsnova.services.SessionService.SessionShortNameComparator;
 import de.thm.arsnova.web.DeprecatedApi;
 import de.thm.arsnova.web.Pagination;
+import de.thm.arsnova.web.SessionRevisionETag;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -50,7 +48,6 @@ import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -163,6 +160,8 @@ public class SessionController extends PaginationController {
 			@ApiParam(value = "sortby", required = true) @RequestParam(value = "sortby", defaultValue = "name") final String sortby,
 			@ApiParam(value = "for a given username. admin rights needed", required = false) @RequestParam(value =
 					"username", defaultValue = "") final String username,
+			@ApiParam(value = "cursor of the page returned in the X-Next-Cursor header", required = false)
+					@RequestParam(value = "cursor", required = false) final String cursor,
 			final HttpServletResponse response
 			) {
 		List<Session> sessions;
@@ -170,9 +169,9 @@ public class SessionController extends PaginationController {
 		if (!"".equals(username)) {
 			try {
 				if (ownedOnly && !visitedOnly) {
-					sessions = sessionService.getUserSessions(username);
+					sessions = sessionService.getUserSessions(username, sortby);
 				} else if (visitedOnly && !ownedOnly) {
-					sessions = sessionService.getUserVisitedSessions(username);
+					sessions = sessionService.getUserVisitedSessions(username, sortby);
 				} else {
 					response.setStatus(HttpStatus.NOT_IMPLEMENTED.value());
 					return null;
@@ -184,9 +183,9 @@ public class SessionController extends PaginationController {
 			/* TODO implement all parameter combinations, implement use of user parameter */
 			try {
 				if (ownedOnly && !visitedOnly) {
-					sessions = sessionService.getMySessions(offset, limit);
+					sessions = sessionService.getMySessions(offset, limit, sortby, cursor);
 				} else if (visitedOnly && !ownedOnly) {
-					sessions = sessionService.getMyVisitedSessions(offset, limit);
+					sessions = sessionService.getMyVisitedSessions(offset, limit, sortby);
 				} else {
 					response.setStatus(HttpStatus.NOT_IMPLEMENTED.value());
 					return null;
@@ -201,12 +200,6 @@ public class SessionController extends PaginationController {
 			return null;
 		}
 
-		if ("shortname".equals(sortby)) {
-			Collections.sort(sessions, new SessionShortNameComparator());
-		} else {
-			Collections.sort(sessions, new SessionNameComparator());
-		}
-
 		return sessions;
 	}
 
@@ -223,13 +216,15 @@ public class SessionController extends PaginationController {
 	public List<SessionInfo> getMySessions(
 			@ApiParam(value = "visitedOnly", required = true) @RequestParam(value = "visitedonly", defaultValue = "false") final boolean visitedOnly,
 			@ApiParam(value = "sort by", required = false) @RequestParam(value = "sortby", defaultValue = "name") final String sortby,
+			@ApiParam(value = "cursor of the page returned in the X-Next-Cursor header", required = false)
+					@RequestParam(value = "cursor", required = false) final String cursor,
 			final HttpServletResponse response
 			) {
 		List<SessionInfo> sessions;
 		if (!visitedOnly) {
-			sessions = sessionService.getMySessionsInfo(offset, limit);
+			sessions = sessionService.getMySessionsInfo(offset, limit, sortby, cursor);
 		} else {
-			sessions = sessionService.getMyVisitedSessionsInfo(offset, limit);
+			sessions = sessionService.getMyVisitedSessionsInfo(offset, limit, sortby);
 		}
 
 		if (sessions == null || sessions.isEmpty()) {
@@ -237,11 +232,6 @@ public class SessionController extends PaginationController {
 			return null;
 		}
 
-		if ("shortname".equals(sortby)) {
-			Collections.sort(sessions, new SessionInfoShortNameComparator());
-		} else {
-			Collections.sort(sessions, new SessionInfoNameComparator());
-		}
 		return sessions;
 	}
 
@@ -348,6 +338,7 @@ public class SessionController extends PaginationController {
 	@ApiOperation(value = "retrieves a value for the learning progress",
 			nickname = "getLearningProgress")
 	@RequestMapping(value = "/{sessionkey}/learningprogress", method = RequestMethod.GET)
+	@SessionRevisionETag({SessionRevisionTracker.Scope.CONTENT, SessionRevisionTracker.Scope.ANSWERS})
 	public LearningProgressValues getLearningProgress(
 			@ApiParam(value = "session-key from current session", required = true) @PathVariable final String sessionkey,
 			@ApiParam(value = "progress type", required = false) @RequestParam(value = "type", defaultValue = "questions") final String progressType,
@@ -360,6 +351,7 @@ public class SessionController extends PaginationController {
 	@ApiOperation(value = "retrieves a value for the learning progress for the current user",
 			nickname = "getMyLearningProgress")
 	@RequestMapping(value = "/{sessionkey}/mylearningprogress", method = RequestMethod.GET)
+	@SessionRevisionETag({SessionRevisionTracker.Scope.CONTENT, SessionRevisionTracker.Scope.ANSWERS})
 	public LearningProgressValues getMyLearningProgress(
 			@ApiParam(value = "session-key from current session", required = true) @PathVariable final String sessionkey,
 			@RequestParam(value = "type", defaultValue = "questions") final String progressType,
@@ -372,6 +364,7 @@ public class SessionController extends PaginationController {
 	@ApiOperation(value = "retrieves all session features",
 			nickname = "getSessionFeatures")
 	@RequestMapping(value = "/{sessionkey}/features", method = RequestMethod.GET)
+	@SessionRevisionETag(SessionRevisionTracker.Scope.FEATURES)
 	public SessionFeature getSessionFeatures(
 			@ApiParam(value = "session-key from current session", required = true) @PathVariable final String sessionkey,
 			final HttpServletResponse response
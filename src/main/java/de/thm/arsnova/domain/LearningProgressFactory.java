@@ -62,6 +62,12 @@ public class LearningProgressFactory implements NovaEventVisitor, ILearningProgr
 		this.publisher.publishEvent(new ChangeLearningProgressEvent(this, event.getSession()));
 	}
 
+	@CacheEvict(value = "learningprogress", key = "#event.Session")
+	@Override
+	public void visit(NewQuestionsEvent event) {
+		this.publisher.publishEvent(new ChangeLearningProgressEvent(this, event.getSession()));
+	}
+
 	@CacheEvict(value = "learningprogress", key = "#event.Session")
 	@Override
 	public void visit(UnlockQuestionEvent event) {
@@ -0,0 +1,58 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.entities;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import de.thm.arsnova.entities.serialization.View;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Statistics about a single cache entry.
+ */
+@ApiModel(value = "cache key statistics", description = "the cache key statistics entity")
+public class CacheKeyStatistics {
+
+	private String key;
+	private long estimatedBytes;
+	private long accesses;
+
+	public CacheKeyStatistics(final String key, final long estimatedBytes, final long accesses) {
+		this.key = key;
+		this.estimatedBytes = estimatedBytes;
+		this.accesses = accesses;
+	}
+
+	@ApiModelProperty(required = true, value = "a description of the entry's key")
+	@JsonView(View.Public.class)
+	public String getKey() {
+		return key;
+	}
+
+	@ApiModelProperty(required = true, value = "the estimated size of the entry in bytes")
+	@JsonView(View.Public.class)
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	@ApiModelProperty(required = true, value = "the number of hits of the entry")
+	@JsonView(View.Public.class)
+	public long getAccesses() {
+		return accesses;
+	}
+}
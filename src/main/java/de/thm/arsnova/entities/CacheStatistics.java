@@ -0,0 +1,154 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.entities;
+
+import com.fasterxml.jackson.annotation.JsonView;
+import de.thm.arsnova.entities.serialization.View;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+import java.util.List;
+
+/**
+ * Statistics about the entries and the usage of a single cache.
+ */
+@ApiModel(value = "cache statistics", description = "the cache statistics entity")
+public class CacheStatistics {
+
+	private String name;
+	private boolean shared;
+	private long entries;
+	private long estimatedBytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private List<CacheKeyStatistics> topKeysByWeight;
+	private List<CacheKeyStatistics> topKeysByAccess;
+
+	@ApiModelProperty(required = true, value = "the name of the cache")
+	@JsonView(View.Public.class)
+	public String getName() {
+		return name;
+	}
+
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	@ApiModelProperty(required = true, value = "whether the cache is backed by a shared tier")
+	@JsonView(View.Public.class)
+	public boolean isShared() {
+		return shared;
+	}
+
+	public void setShared(final boolean shared) {
+		this.shared = shared;
+	}
+
+	@ApiModelProperty(required = true, value = "the number of entries")
+	@JsonView(View.Public.class)
+	public long getEntries() {
+		return entries;
+	}
+
+	public void setEntries(final long entries) {
+		this.entries = entries;
+	}
+
+	@ApiModelProperty(required = true, value = "the estimated size of all entries in bytes")
+	@JsonView(View.Public.class)
+	public long getEstimatedBytes() {
+		return estimatedBytes;
+	}
+
+	public void setEstimatedBytes(final long estimatedBytes) {
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	@ApiModelProperty(required = true, value = "the number of lookups served by the cache")
+	@JsonView(View.Public.class)
+	public long getHits() {
+		return hits;
+	}
+
+	public void setHits(final long hits) {
+		this.hits = hits;
+	}
+
+	@ApiModelProperty(required = true, value = "the number of lookups not served by the cache")
+	@JsonView(View.Public.class)
+	public long getMisses() {
+		return misses;
+	}
+
+	public void setMisses(final long misses) {
+		this.misses = misses;
+	}
+
+	@ApiModelProperty(required = true, value = "the number of entries evicted because of size limits or expiry")
+	@JsonView(View.Public.class)
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void setEvictions(final long evictions) {
+		this.evictions = evictions;
+	}
+
+	@ApiModelProperty(required = true, value = "the fraction of lookups served by the cache")
+	@JsonView(View.Public.class)
+	public double getHitRate() {
+		return getLookups() == 0 ? 1.0 : (double) hits / getLookups();
+	}
+
+	@ApiModelProperty(required = true, value = "the fraction of lookups not served by the cache")
+	@JsonView(View.Public.class)
+	public double getMissRate() {
+		return getLookups() == 0 ? 0.0 : (double) misses / getLookups();
+	}
+
+	@ApiModelProperty(required = true, value = "the number of evictions per lookup")
+	@JsonView(View.Public.class)
+	public double getEvictionRate() {
+		return getLookups() == 0 ? 0.0 : (double) evictions / getLookups();
+	}
+
+	@ApiModelProperty(required = true, value = "the largest entries")
+	@JsonView(View.Public.class)
+	public List<CacheKeyStatistics> getTopKeysByWeight() {
+		return topKeysByWeight;
+	}
+
+	public void setTopKeysByWeight(final List<CacheKeyStatistics> topKeysByWeight) {
+		this.topKeysByWeight = topKeysByWeight;
+	}
+
+	@ApiModelProperty(required = true, value = "the most frequently accessed entries")
+	@JsonView(View.Public.class)
+	public List<CacheKeyStatistics> getTopKeysByAccess() {
+		return topKeysByAccess;
+	}
+
+	public void setTopKeysByAccess(final List<CacheKeyStatistics> topKeysByAccess) {
+		this.topKeysByAccess = topKeysByAccess;
+	}
+
+	private long getLookups() {
+		return hits + misses;
+	}
+}
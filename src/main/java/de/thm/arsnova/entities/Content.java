@@ -23,7 +23,9 @@ import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A question the teacher is asking.
@@ -91,6 +93,9 @@ public class Content implements Entity {
 	private String hint;
 	private String solution;
 
+	private volatile ScoringPlan scoringPlan;
+	private volatile TextNormalizer textNormalizer;
+
 	@ApiModelProperty(required = true, value = "the couchDB ID")
 	@JsonView({View.Persistence.class, View.Public.class})
 	public String getId() {
@@ -754,45 +759,24 @@ public class Content implements Entity {
 		}
 	}
 
-	public String checkCaseSensitive(String answerText) {
-		if (this.isIgnoreCaseSensitive()) {
-			this.setCorrectAnswer(this.getCorrectAnswer().toLowerCase());
-			return answerText.toLowerCase();
-		}
-		return answerText;
-	}
-	public String checkWhitespaces(String answerText) {
-		if (this.isIgnoreWhitespaces()) {
-			this.setCorrectAnswer(this.getCorrectAnswer().replaceAll("[\\s]", ""));
-			return answerText.replaceAll("[\\s]", "");
-		}
-		return answerText;
-	}
-	public String checkPunctuation(String answerText) {
-		if (this.isIgnorePunctuation()) {
-			this.setCorrectAnswer(this.getCorrectAnswer().replaceAll("\\p{Punct}", ""));
-			return answerText.replaceAll("\\p{Punct}", "");
-		}
-		return answerText;
-	}
-
+	/**
+	 * Normalizes the raw answer text according to the content's <code>ignore*</code> options. The content itself is not
+	 * modified, so this method can safely be called concurrently on shared instances.
+	 */
 	public void checkTextStrictOptions(Answer answer) {
-		answer.setAnswerTextRaw(this.checkCaseSensitive(answer.getAnswerTextRaw()));
-		answer.setAnswerTextRaw(this.checkPunctuation(answer.getAnswerTextRaw()));
-		answer.setAnswerTextRaw(this.checkWhitespaces(answer.getAnswerTextRaw()));
+		answer.setAnswerTextRaw(getTextNormalizer().normalize(answer.getAnswerTextRaw()));
 	}
 
 	public int evaluateCorrectAnswerFixedText(String answerTextRaw) {
-		if (answerTextRaw != null) {
-			if (answerTextRaw.equals(this.getCorrectAnswer())) {
-				return this.getRating();
-			}
+		if (isSuccessfulFreeTextAnswer(answerTextRaw)) {
+			return this.getRating();
 		}
 		return 0;
 	}
 
 	public boolean isSuccessfulFreeTextAnswer(String answerTextRaw) {
-		return answerTextRaw != null && answerTextRaw.equals(this.getCorrectAnswer());
+		final String expected = this.isStrictMode() ? getTextNormalizer().normalizedCorrectAnswer : this.getCorrectAnswer();
+		return answerTextRaw != null && answerTextRaw.equals(expected);
 	}
 
 	public void updateRoundStartVariables(Date start, Date end) {
@@ -810,15 +794,22 @@ public class Content implements Entity {
 		this.setPiRoundEndTime(end.getTime());
 	}
 
-	public void updateRoundManagementState() {
-		final long time = new Date().getTime();
-
-		if (time > this.getPiRoundEndTime() && this.isPiRoundActive()) {
-			this.setPiRoundEndTime(0);
-			this.setPiRoundStartTime(0);
-			this.setPiRoundActive(false);
-			this.setPiRoundFinished(true);
+	/**
+	 * Finishes the active pi round. Rounds are ended explicitly when their end time is reached, so reading a content
+	 * never changes its state.
+	 *
+	 * @return <code>true</code> if a round was active
+	 */
+	public boolean endPiRound() {
+		if (!this.isPiRoundActive()) {
+			return false;
 		}
+		this.setPiRoundEndTime(0);
+		this.setPiRoundStartTime(0);
+		this.setPiRoundActive(false);
+		this.setPiRoundFinished(true);
+
+		return true;
 	}
 
 	public void resetRoundManagementState() {
@@ -846,37 +837,174 @@ public class Content implements Entity {
 	}
 
 	private int calculateRegularValue(Answer answer) {
-		String answerText = answer.getAnswerText();
-		for (PossibleAnswer p : this.possibleAnswers) {
-			if (answerText.equals(p.getText())) {
-				return p.getValue();
-			}
-		}
-		return 0;
+		return getScoringPlan().getTextValue(answer.getAnswerText());
 	}
 
 	private int calculateGridValue(Answer answer) {
+		final ScoringPlan plan = getScoringPlan();
+		final String answerText = answer.getAnswerText();
+		/* Cells are determined the same way as String.split(",") would: trailing empty cells are ignored. */
+		if (answerText.indexOf(',') < 0) {
+			return plan.getTextValue(answerText);
+		}
+		int end = answerText.length();
+		while (end > 0 && answerText.charAt(end - 1) == ',') {
+			end--;
+		}
 		int value = 0;
-		String[] answers = answer.getAnswerText().split(",");
-		for (String a : answers) {
-			for (PossibleAnswer p : this.possibleAnswers) {
-				if (a.equals(p.getText())) {
-					value += p.getValue();
-				}
+		int start = 0;
+		while (start < end) {
+			int comma = answerText.indexOf(',', start);
+			if (comma < 0 || comma > end) {
+				comma = end;
 			}
+			value += plan.getTextValue(answerText.substring(start, comma));
+			start = comma + 1;
 		}
 		return value;
 	}
 
 	private int calculateMultipleChoiceValue(Answer answer) {
+		final int[] values = getScoringPlan().optionValues;
+		final String answerText = answer.getAnswerText();
 		int value = 0;
-		String[] answers = answer.getAnswerText().split(",");
-		for (int i = 0; i < this.possibleAnswers.size() && i < answers.length; i++) {
-			if ("1".equals(answers[i])) {
-				PossibleAnswer p = this.possibleAnswers.get(i);
-				value += p.getValue();
+		int start = 0;
+		for (int i = 0; i < values.length && start <= answerText.length(); i++) {
+			int comma = answerText.indexOf(',', start);
+			if (comma < 0) {
+				comma = answerText.length();
+			}
+			if (comma - start == 1 && answerText.charAt(start) == '1') {
+				value += values[i];
 			}
+			start = comma + 1;
 		}
 		return value;
 	}
+
+	/**
+	 * Returns the scoring plan for the current revision, type and possible answers of this content. The plan is built
+	 * on first use and rebuilt if one of these properties has been replaced.
+	 */
+	private ScoringPlan getScoringPlan() {
+		ScoringPlan plan = scoringPlan;
+		if (plan == null || !plan.isValidFor(this)) {
+			plan = new ScoringPlan(this);
+			scoringPlan = plan;
+		}
+		return plan;
+	}
+
+	private TextNormalizer getTextNormalizer() {
+		TextNormalizer normalizer = textNormalizer;
+		if (normalizer == null || !normalizer.isValidFor(this)) {
+			normalizer = new TextNormalizer(this);
+			textNormalizer = normalizer;
+		}
+		return normalizer;
+	}
+
+	/**
+	 * Immutable lookup structures to score answers without scanning the possible answers: a map from answer text to
+	 * the summed value of all possible answers with this text and the values of the possible answers by position.
+	 * Possible answers are not expected to be modified in place once answers are scored.
+	 */
+	private static final class ScoringPlan {
+		private final String rev;
+		private final String questionType;
+		private final List<PossibleAnswer> possibleAnswers;
+		private final int size;
+		private final Map<String, Integer> textValues;
+		private final int[] optionValues;
+
+		private ScoringPlan(final Content content) {
+			rev = content.rev;
+			questionType = content.questionType;
+			possibleAnswers = content.possibleAnswers;
+			size = possibleAnswers == null ? 0 : possibleAnswers.size();
+			textValues = new HashMap<>(size * 2);
+			optionValues = new int[size];
+			final boolean sum = "grid".equals(questionType);
+			for (int i = 0; i < size; i++) {
+				final PossibleAnswer p = possibleAnswers.get(i);
+				optionValues[i] = p.getValue();
+				if (p.getText() == null) {
+					continue;
+				}
+				/* Grid cells count all matching possible answers, other types only the first one. */
+				if (sum) {
+					textValues.merge(p.getText(), p.getValue(), Integer::sum);
+				} else {
+					textValues.putIfAbsent(p.getText(), p.getValue());
+				}
+			}
+		}
+
+		private boolean isValidFor(final Content content) {
+			return possibleAnswers == content.possibleAnswers
+					&& (possibleAnswers == null || size == possibleAnswers.size())
+					&& (rev == null ? content.rev == null : rev.equals(content.rev))
+					&& (questionType == null ? content.questionType == null : questionType.equals(content.questionType));
+		}
+
+		private int getTextValue(final String text) {
+			final Integer value = textValues.get(text);
+			return value == null ? 0 : value;
+		}
+	}
+
+	/**
+	 * Immutable normalizer for strict free text evaluation. Case is ignored by lower casing the text, punctuation and
+	 * whitespace by dropping the respective ASCII characters in a single pass. The correct answer is normalized once.
+	 */
+	private static final class TextNormalizer {
+		private final boolean ignoreCase;
+		private final boolean ignoreWhitespaces;
+		private final boolean ignorePunctuation;
+		private final String correctAnswer;
+		private final String normalizedCorrectAnswer;
+
+		private TextNormalizer(final Content content) {
+			ignoreCase = content.ignoreCaseSensitive;
+			ignoreWhitespaces = content.ignoreWhitespaces;
+			ignorePunctuation = content.ignorePunctuation;
+			correctAnswer = content.correctAnswer;
+			normalizedCorrectAnswer = normalize(correctAnswer);
+		}
+
+		private boolean isValidFor(final Content content) {
+			return ignoreCase == content.ignoreCaseSensitive
+					&& ignoreWhitespaces == content.ignoreWhitespaces
+					&& ignorePunctuation == content.ignorePunctuation
+					&& (correctAnswer == null ? content.correctAnswer == null : correctAnswer.equals(content.correctAnswer));
+		}
+
+		private String normalize(final String text) {
+			if (text == null) {
+				return null;
+			}
+			final String source = ignoreCase ? text.toLowerCase() : text;
+			if (!ignoreWhitespaces && !ignorePunctuation) {
+				return source;
+			}
+			final StringBuilder result = new StringBuilder(source.length());
+			for (int i = 0; i < source.length(); i++) {
+				final char c = source.charAt(i);
+				if (!(ignoreWhitespaces && isWhitespace(c)) && !(ignorePunctuation && isPunctuation(c))) {
+					result.append(c);
+				}
+			}
+			return result.length() == source.length() ? source : result.toString();
+		}
+
+		/* Same characters as the regex class \s */
+		private static boolean isWhitespace(final char c) {
+			return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+		}
+
+		/* Same characters as the regex class \p{Punct} */
+		private static boolean isPunctuation(final char c) {
+			return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+		}
+	}
 }
@@ -28,6 +28,8 @@ public interface NovaEventVisitor {
 
 	void visit(NewQuestionEvent newQuestionEvent);
 
+	void visit(NewQuestionsEvent newQuestionsEvent);
+
 	void visit(UnlockQuestionEvent unlockQuestionEvent);
 
 	void visit(UnlockQuestionsEvent newQuestionsEvent);
@@ -5,11 +5,13 @@ import de.thm.arsnova.entities.Session;
 import de.thm.arsnova.entities.User;
 
 import java.util.List;
+import java.util.Map;
 
 public interface ContentRepository {
 	List<Content> getQuestions(Object... keys);
 	Content getQuestion(String id);
 	Content saveQuestion(Session session, Content content);
+	List<Content> saveQuestions(Session session, List<Content> contents);
 	List<Content> getSkillQuestionsForUsers(Session session);
 	List<Content> getSkillQuestionsForTeachers(Session session);
 	int getSkillQuestionCount(Session session);
@@ -41,4 +43,5 @@ public interface ContentRepository {
 	List<String> getSubjects(Session session, String questionVariant);
 	List<String> getUnAnsweredLectureQuestionIds(Session session, User user);
 	List<String> getUnAnsweredPreparationQuestionIds(Session session, User user);
+	Map<String, Long> getPendingPiRoundEndTimes();
 }
@@ -41,17 +41,27 @@ public interface SessionRepository {
 
 	Session changeSessionCreator(Session session, String newCreator);
 	int[] deleteInactiveGuestSessions(long lastActivityBefore);
-	List<Session> getMySessions(User user, final int start, final int limit);
-	List<Session> getSessionsForUsername(String username, final int start, final int limit);
+	List<Session> getMySessions(User user, final int start, final int limit, final String sortby, final String cursor);
+
+	/**
+	 * Retrieves a page of the user's sessions. The sessions are sorted by the database.
+	 *
+	 * @param sortby <code>shortname</code> to sort by short name, otherwise sessions are sorted by name
+	 * @param cursor position of the page returned with the previous page, or <code>null</code> to use the start index
+	 * @return the page which also provides the cursor of the following page
+	 */
+	List<Session> getSessionsForUsername(String username, final int start, final int limit, final String sortby,
+			final String cursor);
 	List<Session> getPublicPoolSessions();
 	List<Session> getMyPublicPoolSessions(User user);
 	boolean sessionKeyAvailable(String keyword);
 	Session updateSessionOwnerActivity(Session session);
-	List<Session> getVisitedSessionsForUsername(String username, final int start, final int limit);
-	List<SessionInfo> getMySessionsInfo(User user, final int start, final int limit);
+	List<Session> getVisitedSessionsForUsername(String username, final int start, final int limit, final String sortby);
+	List<SessionInfo> getMySessionsInfo(User user, final int start, final int limit, final String sortby,
+			final String cursor);
 	List<SessionInfo> getPublicPoolSessionsInfo();
 	List<SessionInfo> getMyPublicPoolSessionsInfo(final User user);
-	List<SessionInfo> getMyVisitedSessionsInfo(User currentUser, final int start, final int limit);
+	List<SessionInfo> getMyVisitedSessionsInfo(User currentUser, final int start, final int limit, final String sortby);
 	List<Session> getCourseSessions(List<Course> courses);
 	SessionInfo importSession(User user, ImportExportSession importSession);
 	ImportExportSession exportSession(String sessionkey, Boolean withAnswer, Boolean withFeedbackQuestions);
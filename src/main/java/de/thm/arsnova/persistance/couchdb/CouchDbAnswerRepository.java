@@ -1,6 +1,7 @@
 package de.thm.arsnova.persistance.couchdb;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import de.thm.arsnova.entities.Answer;
 import de.thm.arsnova.entities.Content;
@@ -18,25 +19,37 @@ import org.ektorp.ComplexKey;
 import org.ektorp.CouchDbConnector;
 import org.ektorp.DbAccessException;
 import org.ektorp.DocumentOperationResult;
+import org.ektorp.StreamingViewResult;
 import org.ektorp.UpdateConflictException;
+import org.ektorp.ViewQuery;
 import org.ektorp.ViewResult;
 import org.ektorp.support.CouchDbRepositorySupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.scheduling.annotation.Scheduled;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> implements AnswerRepository, ApplicationEventPublisherAware {
-	private static final int BULK_PARTITION_SIZE = 500;
 	private static final Logger logger = LoggerFactory.getLogger(CouchDbAnswerRepository.class);
 
 	private final Queue<AnswerQueueElement> answerQueue = new ConcurrentLinkedQueue<>();
@@ -50,12 +63,42 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 	@Autowired
 	private ContentRepository contentRepository;
 
+	@Value("${couchdb.bulk-delete.batch-size:500}")
+	private int bulkDeleteBatchSize;
+
+	@Value("${couchdb.bulk-delete.concurrency:2}")
+	private int bulkDeleteConcurrency;
+
 	private ApplicationEventPublisher publisher;
 
+	/* Sends bulk delete requests of all deletions. Initialized once the concurrency is injected. */
+	private ExecutorService bulkDeleteExecutor;
+
 	public CouchDbAnswerRepository(CouchDbConnector db, boolean createIfNotExists) {
 		super(Answer.class, db, createIfNotExists);
 	}
 
+	@PostConstruct
+	public void init() {
+		if (bulkDeleteConcurrency > 1) {
+			/* The queue does not need a bound: each deletion submits at most as many batches as there are threads. */
+			bulkDeleteExecutor = new ThreadPoolExecutor(bulkDeleteConcurrency, bulkDeleteConcurrency,
+					0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+						final Thread thread = new Thread(r, "answer-bulk-delete");
+						thread.setDaemon(true);
+
+						return thread;
+					});
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		if (bulkDeleteExecutor != null) {
+			bulkDeleteExecutor.shutdown();
+		}
+	}
+
 	@Scheduled(fixedDelay = 5000)
 	public void flushAnswerQueue() {
 		if (answerQueue.isEmpty()) {
@@ -92,26 +135,10 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 	@Override
 	public int deleteAnswers(final Content content) {
 		try {
-			final ViewResult result = db.queryView(createQuery("by_questionid")
-					.key(content.getId()));
-			final List<List<ViewResult.Row>> partitions = Lists.partition(result.getRows(), BULK_PARTITION_SIZE);
-
-			int count = 0;
-			for (List<ViewResult.Row> partition: partitions) {
-				List<BulkDeleteDocument> answersToDelete = new ArrayList<>();
-				for (final ViewResult.Row a : partition) {
-					final BulkDeleteDocument d = new BulkDeleteDocument(a.getId(), a.getValueAsNode().get("_rev").asText());
-					answersToDelete.add(d);
-				}
-				List<DocumentOperationResult> errors = db.executeBulk(answersToDelete);
-				count += partition.size() - errors.size();
-				if (errors.size() > 0) {
-					logger.error("Could not bulk delete {} of {} answers.", errors.size(), partition.size());
-				}
-			}
-			dbLogger.log("delete", "type", "answer", "answerCount", count);
+			final int[] count = streamingBulkDelete(createQuery("by_questionid").key(content.getId()), "answer");
+			dbLogger.log("delete", "type", "answer", "answerCount", count[0]);
 
-			return count;
+			return count[0];
 		} catch (final DbAccessException e) {
 			logger.error("Could not delete answers for content {}.", content.getId(), e);
 		}
@@ -177,7 +204,7 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 		return answers;
 	}
 
-	@Cacheable("answers")
+	@Cacheable(value = "answers", sync = true)
 	@Override
 	public List<Answer> getAnswers(final Content content) {
 		return this.getAnswers(content, content.getPiRound());
@@ -299,8 +326,7 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 		return result.isEmpty() ? 0 : result.getRows().get(0).getValueAsInt();
 	}
 
-	/* TODO: Only evict cache entry for the answer's question. This requires some refactoring. */
-	@CacheEvict(value = "answers", allEntries = true)
+	/* Cached answers of the session are evicted by the CacheBuster. */
 	@Override
 	public int deleteAllQuestionsAnswers(final Session session) {
 		final List<Content> contents = contentRepository.getQuestions(session.getId());
@@ -309,8 +335,7 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 		return deleteAllAnswersForQuestions(contents);
 	}
 
-	/* TODO: Only evict cache entry for the answer's question. This requires some refactoring. */
-	@CacheEvict(value = "answers", allEntries = true)
+	/* Cached answers of the session are evicted by the CacheBuster. */
 	@Override
 	public int deleteAllPreparationAnswers(final Session session) {
 		final List<Content> contents = contentRepository.getQuestions(session.getId(), "preparation");
@@ -319,8 +344,7 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 		return deleteAllAnswersForQuestions(contents);
 	}
 
-	/* TODO: Only evict cache entry for the answer's question. This requires some refactoring. */
-	@CacheEvict(value = "answers", allEntries = true)
+	/* Cached answers of the session are evicted by the CacheBuster. */
 	@Override
 	public int deleteAllLectureAnswers(final Session session) {
 		final List<Content> contents = contentRepository.getQuestions(session.getId(), "lecture");
@@ -330,21 +354,12 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 	}
 
 	public int deleteAllAnswersForQuestions(List<Content> contents) {
-		List<String> questionIds = new ArrayList<>();
+		final List<String> questionIds = new ArrayList<>();
 		for (Content q : contents) {
 			questionIds.add(q.getId());
 		}
-		final ViewResult result = db.queryView(createQuery("by_questionid")
-				.keys(questionIds));
-		final List<BulkDeleteDocument> allAnswers = new ArrayList<>();
-		for (ViewResult.Row a : result.getRows()) {
-			final BulkDeleteDocument d = new BulkDeleteDocument(a.getId(), a.getValueAsNode().get("_rev").asText());
-			allAnswers.add(d);
-		}
 		try {
-			List<DocumentOperationResult> errors = db.executeBulk(allAnswers);
-
-			return allAnswers.size() - errors.size();
+			return deleteAnswersByQuestionIds(questionIds)[0];
 		} catch (DbAccessException e) {
 			logger.error("Could not bulk delete answers.", e);
 		}
@@ -353,7 +368,7 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 	}
 
 	public int[] deleteAllAnswersWithQuestions(List<Content> contents) {
-		List<String> questionIds = new ArrayList<>();
+		final List<String> questionIds = new ArrayList<>();
 		final List<BulkDeleteDocument> allQuestions = new ArrayList<>();
 		for (Content q : contents) {
 			final BulkDeleteDocument d = new BulkDeleteDocument(q.getId(), q.getRevision());
@@ -361,25 +376,117 @@ public class CouchDbAnswerRepository extends CouchDbRepositorySupport<Answer> im
 			allQuestions.add(d);
 		}
 
-		final ViewResult result = db.queryView(createQuery("by_questionid")
-				.key(questionIds));
-		final List<BulkDeleteDocument> allAnswers = new ArrayList<>();
-		for (ViewResult.Row a : result.getRows()) {
-			final BulkDeleteDocument d = new BulkDeleteDocument(a.getId(), a.getValueAsNode().get("_rev").asText());
-			allAnswers.add(d);
-		}
-
 		try {
-			List<BulkDeleteDocument> deleteList = new ArrayList<>(allAnswers);
-			deleteList.addAll(allQuestions);
-			List<DocumentOperationResult> errors = db.executeBulk(deleteList);
+			/* Answers are deleted first so no orphaned answers remain if deleting the contents fails. */
+			final int[] answerCount = deleteAnswersByQuestionIds(questionIds);
+			final int[] questionCount = bulkDelete(allQuestions.iterator(), "content");
 
-			/* TODO: subtract errors from count */
-			return new int[] {allQuestions.size(), allAnswers.size()};
+			return new int[] {questionCount[0], answerCount[0]};
 		} catch (DbAccessException e) {
 			logger.error("Could not bulk delete contents and answers.", e);
 		}
 
 		return new int[] {0, 0};
 	}
+
+	/**
+	 * Deletes the answers of the given questions. The IDs are split into chunks so the size of the view request's
+	 * body is bounded as well.
+	 *
+	 * @return the number of deleted answers and the number of answers which could not be deleted
+	 */
+	private int[] deleteAnswersByQuestionIds(final List<String> questionIds) {
+		final int[] count = {0, 0};
+		for (List<String> partition : Lists.partition(questionIds, bulkDeleteBatchSize)) {
+			final int[] partitionCount = streamingBulkDelete(createQuery("by_questionid").keys(partition), "answer");
+			count[0] += partitionCount[0];
+			count[1] += partitionCount[1];
+		}
+
+		return count;
+	}
+
+	/**
+	 * Deletes all documents referenced by the rows of the view query. Rows are read incrementally from the response
+	 * stream instead of loading the whole {@link ViewResult} into memory. The view has to emit the document's
+	 * revision as <code>_rev</code> property of the row's value.
+	 *
+	 * @return the number of deleted documents and the number of documents which could not be deleted
+	 */
+	private int[] streamingBulkDelete(final ViewQuery query, final String type) {
+		try (final StreamingViewResult result = db.queryForStream(query)) {
+			final Iterator<BulkDeleteDocument> docs = Iterators.transform(result.iterator(),
+					row -> new BulkDeleteDocument(row.getId(), row.getValueAsNode().get("_rev").asText()));
+
+			return bulkDelete(docs, type);
+		}
+	}
+
+	/**
+	 * Sends bulk delete requests of at most <code>couchdb.bulk-delete.batch-size</code> documents. Up to
+	 * <code>couchdb.bulk-delete.concurrency</code> requests are sent in parallel by the repository's executor, which
+	 * is shared by all deletions. The next batch is only taken from
+	 * the iterator once a request slot is free, so the amount of documents held in memory stays bounded. If the thread
+	 * is interrupted, no further batches are sent but the pending requests are still awaited before returning.
+	 *
+	 * @return the number of deleted documents and the number of documents which could not be deleted
+	 */
+	private int[] bulkDelete(final Iterator<BulkDeleteDocument> docs, final String type) {
+		final AtomicInteger deleted = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final int concurrency = Math.max(1, bulkDeleteConcurrency);
+		final Semaphore slots = new Semaphore(concurrency);
+		final ExecutorService executor = bulkDeleteExecutor;
+		final Iterator<List<BulkDeleteDocument>> batches = Iterators.partition(docs, bulkDeleteBatchSize);
+
+		try {
+			while (batches.hasNext()) {
+				final List<BulkDeleteDocument> batch = batches.next();
+				final Runnable task = () -> {
+					try {
+						final List<DocumentOperationResult> errors = db.executeBulk(batch);
+						deleted.addAndGet(batch.size() - errors.size());
+						failed.addAndGet(errors.size());
+						if (!errors.isEmpty()) {
+							logger.error("Could not bulk delete {} of {} {}s.", errors.size(), batch.size(), type);
+						}
+					} catch (final DbAccessException e) {
+						failed.addAndGet(batch.size());
+						logger.error("Could not bulk delete {} {}s.", batch.size(), type, e);
+					} finally {
+						slots.release();
+					}
+					logger.debug("Bulk deletion progress: {} {}s deleted, {} failed.", deleted.get(), type, failed.get());
+				};
+				try {
+					slots.acquire();
+				} catch (final InterruptedException e) {
+					/* Stop sending further batches. The batch which has already been taken is not deleted. */
+					failed.addAndGet(batch.size());
+					logger.warn("Bulk deletion of {}s has been interrupted.", type);
+					Thread.currentThread().interrupt();
+					break;
+				}
+				if (executor == null) {
+					task.run();
+				} else {
+					try {
+						executor.execute(task);
+					} catch (final RejectedExecutionException e) {
+						/* The executor has been shut down: the task has to release its slot itself. */
+						task.run();
+					}
+				}
+			}
+		} finally {
+			/* Wait for pending requests so the counts are final even if the deletion has been interrupted. */
+			slots.acquireUninterruptibly(concurrency);
+			slots.release(concurrency);
+		}
+		if (failed.get() > 0) {
+			logger.warn("Bulk deleted {} {}s, {} could not be deleted.", deleted.get(), type, failed.get());
+		}
+
+		return new int[] {deleted.get(), failed.get()};
+	}
 }
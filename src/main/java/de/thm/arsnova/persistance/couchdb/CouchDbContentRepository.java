@@ -1,8 +1,15 @@
 package de.thm.arsnova.persistance.couchdb;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.thm.arsnova.cache.SessionContentCache;
 import de.thm.arsnova.entities.Content;
 import de.thm.arsnova.entities.Session;
 import de.thm.arsnova.entities.User;
+import de.thm.arsnova.entities.serialization.CouchDbObjectMapperFactory;
 import de.thm.arsnova.persistance.AnswerRepository;
 import de.thm.arsnova.persistance.ContentRepository;
 import de.thm.arsnova.persistance.LogEntryRepository;
@@ -10,6 +17,8 @@ import org.ektorp.ComplexKey;
 import org.ektorp.CouchDbConnector;
 import org.ektorp.DbAccessException;
 import org.ektorp.DocumentNotFoundException;
+import org.ektorp.DocumentOperationResult;
+import org.ektorp.Options;
 import org.ektorp.UpdateConflictException;
 import org.ektorp.ViewQuery;
 import org.ektorp.ViewResult;
@@ -26,11 +35,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 public class CouchDbContentRepository extends CouchDbRepositorySupport<Content> implements ContentRepository {
+	private static final int REVISION_CACHE_SIZE = 10000;
+	private static final int UPDATE_CONFLICT_RETRIES = 3;
 	private static final Logger logger = LoggerFactory.getLogger(CouchDbContentRepository.class);
 
 	@Autowired
@@ -39,28 +52,54 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 	@Autowired
 	private AnswerRepository answerRepository;
 
+	@Autowired
+	private SessionContentCache sessionContentCache;
+
+	/* Latest known revisions of content documents. They are used to avoid retrieving a document before updating it. */
+	private final Cache<String, String> knownRevisions = CacheBuilder.newBuilder()
+			.maximumSize(REVISION_CACHE_SIZE)
+			.build();
+
+	private final ObjectMapper objectMapper;
+
 	public CouchDbContentRepository(CouchDbConnector db, boolean createIfNotExists) {
 		super(Content.class, db, createIfNotExists);
+		objectMapper = new CouchDbObjectMapperFactory().createObjectMapper(db);
 	}
 
-	@Cacheable("skillquestions")
 	@Override
 	public List<Content> getSkillQuestionsForUsers(final Session session) {
-		final List<Content> contents = new ArrayList<>();
-		final List<Content> questions1 = getQuestions(session.getId(), "lecture", true);
-		final List<Content> questions2 = getQuestions(session.getId(), "preparation", true);
-		final List<Content> questions3 = getQuestions(session.getId(), "flashcard", true);
-		contents.addAll(questions1);
-		contents.addAll(questions2);
-		contents.addAll(questions3);
+		return sessionContentCache.get(session.getId(), "all", () -> loadActiveContents(session));
+	}
+
+	/**
+	 * Loads the active contents of the session with a single query and partitions them by variant. The lists keep the
+	 * order of the view. The list <code>all</code> contains lecture, preparation and flashcard contents in this order.
+	 */
+	private Map<String, List<Content>> loadActiveContents(final Session session) {
+		final Map<String, List<Content>> lists = new HashMap<>();
+		lists.put("lecture", new ArrayList<>());
+		lists.put("preparation", new ArrayList<>());
+		lists.put("flashcard", new ArrayList<>());
+		/* The active flag is part of the key after the variant, so inactive contents are filtered here. */
+		for (final Content content : getQuestions(session.getId())) {
+			final List<Content> list = lists.get(content.getQuestionVariant());
+			if (content.isActive() && list != null) {
+				list.add(content);
+			}
+		}
+		final List<Content> all = new ArrayList<>();
+		all.addAll(lists.get("lecture"));
+		all.addAll(lists.get("preparation"));
+		all.addAll(lists.get("flashcard"));
+		lists.put("all", all);
 
-		return contents;
+		return lists;
 	}
 
-	@Cacheable("skillquestions")
 	@Override
 	public List<Content> getSkillQuestionsForTeachers(final Session session) {
-		return getQuestions(new Object[] {session.getId()}, session);
+		return getQuestions(session.getId());
 	}
 
 	@Override
@@ -69,19 +108,17 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 				.startKey(ComplexKey.of(session.getId()))
 				.endKey(ComplexKey.of(session.getId(), ComplexKey.emptyObject())));
 
-		return result.getSize();
+		return result.isEmpty() ? 0 : result.getRows().get(0).getValueAsInt();
 	}
 
-	@Caching(evict = {@CacheEvict(value = "skillquestions", key = "#session"),
-			@CacheEvict(value = "lecturequestions", key = "#session", condition = "#content.getQuestionVariant().equals('lecture')"),
-			@CacheEvict(value = "preparationquestions", key = "#session", condition = "#content.getQuestionVariant().equals('preparation')"),
-			@CacheEvict(value = "flashcardquestions", key = "#session", condition = "#content.getQuestionVariant().equals('flashcard')") },
-			put = {@CachePut(value = "questions", key = "#content.id")})
+	@CachePut(value = "questions", key = "#content.id")
 	@Override
 	public Content saveQuestion(final Session session, final Content content) {
 		content.setSessionId(session.getId());
 		try {
 			db.create(content);
+			rememberRevision(content);
+			sessionContentCache.evict(session.getId());
 
 			return content;
 		} catch (final IllegalArgumentException e) {
@@ -91,36 +128,117 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return null;
 	}
 
-	/* TODO: Only evict cache entry for the content's session. This requires some refactoring. */
-	@Caching(evict = {@CacheEvict(value = "skillquestions", allEntries = true),
-			@CacheEvict(value = "lecturequestions", allEntries = true, condition = "#content.getQuestionVariant().equals('lecture')"),
-			@CacheEvict(value = "preparationquestions", allEntries = true, condition = "#content.getQuestionVariant().equals('preparation')"),
-			@CacheEvict(value = "flashcardquestions", allEntries = true, condition = "#content.getQuestionVariant().equals('flashcard')") },
-			put = {@CachePut(value = "questions", key = "#content.id")})
 	@Override
-	public Content updateQuestion(final Content content) {
+	public List<Content> saveQuestions(final Session session, final List<Content> contents) {
+		for (final Content content : contents) {
+			content.setSessionId(session.getId());
+			/* Bulk results only carry document ids, so failed documents can only be identified if the ids are known. */
+			if (content.getId() == null) {
+				content.setId(UUID.randomUUID().toString().replace("-", ""));
+			}
+		}
 		try {
-			/* TODO: Make sure that sessionId is valid before so the content does not need to be retrieved. */
-			final Content oldContent = get(content.getId());
-			content.setId(oldContent.getId());
-			content.setRevision(oldContent.getRevision());
-			content.updateRoundManagementState();
-			update(content);
+			final List<DocumentOperationResult> errors = db.executeBulk(contents);
+			sessionContentCache.evict(session.getId());
+			if (!errors.isEmpty()) {
+				logger.error("Could not bulk save {} of {} contents.", errors.size(), contents.size());
+			}
+			final Set<String> failedIds = new HashSet<>();
+			for (final DocumentOperationResult error : errors) {
+				failedIds.add(error.getId());
+			}
+			final List<Content> saved = new ArrayList<>();
+			for (final Content content : contents) {
+				if (!failedIds.contains(content.getId())) {
+					rememberRevision(content);
+					saved.add(content);
+				}
+			}
 
-			return content;
-		} catch (final UpdateConflictException e) {
-			logger.error("Could not update content {}.", content, e);
+			return saved;
+		} catch (final DbAccessException e) {
+			logger.error("Could not bulk save contents.", e);
 		}
 
-		return null;
+		return new ArrayList<>();
 	}
 
-	@Cacheable("questions")
+	/**
+	 * Updates the content using the latest known revision. The document only needs to be retrieved before the update
+	 * if its revision is unknown. If the document has been changed concurrently, the changes of this update are
+	 * applied to the current version of the document.
+	 */
+	@CachePut(value = "questions", key = "#content.id")
+	@Override
+	public Content updateQuestion(final Content content) {
+		String baseRevision = knownRevisions.getIfPresent(content.getId());
+		if (baseRevision == null) {
+			final Content current = get(content.getId());
+			rememberRevision(current);
+			baseRevision = current.getRevision();
+		}
+		content.setRevision(baseRevision);
+		Content updated = content;
+		for (int attempt = 0;; attempt++) {
+			try {
+				update(updated);
+				rememberRevision(updated);
+				sessionContentCache.evict(updated.getSessionId());
+
+				return updated;
+			} catch (final UpdateConflictException e) {
+				if (attempt >= UPDATE_CONFLICT_RETRIES) {
+					logger.error("Could not update content {}.", content, e);
+
+					return null;
+				}
+				logger.debug("Update of content {} conflicted, merging changes.", content.getId());
+				updated = mergeChanges(content, baseRevision);
+			}
+		}
+	}
+
+	/**
+	 * Applies the fields of the content which differ from the base revision to the current version of the document.
+	 * The base revision is only retrieved in case of a conflict. If it is not available anymore, e.g., after a
+	 * compaction of the database, all fields of the content are applied.
+	 */
+	private Content mergeChanges(final Content content, final String baseRevision) {
+		final Content current = get(content.getId());
+		final ObjectNode merged = objectMapper.valueToTree(current);
+		final ObjectNode changes = objectMapper.valueToTree(content);
+		ObjectNode base = null;
+		try {
+			base = objectMapper.valueToTree(db.get(Content.class, content.getId(), new Options().revision(baseRevision)));
+		} catch (final DocumentNotFoundException e) {
+			logger.debug("Base revision {} of content {} is not available.", baseRevision, content.getId());
+		}
+		final Iterator<Map.Entry<String, JsonNode>> fields = changes.fields();
+		while (fields.hasNext()) {
+			final Map.Entry<String, JsonNode> field = fields.next();
+			if ("_id".equals(field.getKey()) || "_rev".equals(field.getKey())) {
+				continue;
+			}
+			if (base == null || !field.getValue().equals(base.get(field.getKey()))) {
+				merged.set(field.getKey(), field.getValue());
+			}
+		}
+		final Content result = objectMapper.convertValue(merged, Content.class);
+		result.setRevision(current.getRevision());
+
+		return result;
+	}
+
+	private void rememberRevision(final Content content) {
+		knownRevisions.put(content.getId(), content.getRevision());
+	}
+
+	@Cacheable(value = "questions", sync = true)
 	@Override
 	public Content getQuestion(final String id) {
 		try {
 			final Content content = get(id);
-			content.updateRoundManagementState();
+			rememberRevision(content);
 			//content.setSessionKeyword(sessionRepository.getSessionFromId(content.getSessionId()).getKeyword());
 
 			return content;
@@ -136,17 +254,14 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return collectQuestionIds(db.queryView(createQuery("by_sessionid_variant_active").key(session.getId())));
 	}
 
-	/* TODO: Only evict cache entry for the content's session. This requires some refactoring. */
-	@Caching(evict = { @CacheEvict(value = "questions", key = "#content.id"),
-			@CacheEvict(value = "skillquestions", allEntries = true),
-			@CacheEvict(value = "lecturequestions", allEntries = true, condition = "#content.getQuestionVariant().equals('lecture')"),
-			@CacheEvict(value = "preparationquestions", allEntries = true, condition = "#content.getQuestionVariant().equals('preparation')"),
-			@CacheEvict(value = "flashcardquestions", allEntries = true, condition = "#content.getQuestionVariant().equals('flashcard')") })
+	@CacheEvict(value = "questions", key = "#content.id")
 	@Override
 	public int deleteQuestionWithAnswers(final Content content) {
 		try {
 			int count = answerRepository.deleteAnswers(content);
 			db.delete(content);
+			knownRevisions.invalidate(content.getId());
+			sessionContentCache.evict(content.getSessionId());
 			dbLogger.log("delete", "type", "content", "answerCount", count);
 
 			return count;
@@ -157,11 +272,7 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return 0;
 	}
 
-	@Caching(evict = { @CacheEvict(value = "questions", allEntries = true),
-			@CacheEvict(value = "skillquestions", key = "#session"),
-			@CacheEvict(value = "lecturequestions", key = "#session"),
-			@CacheEvict(value = "preparationquestions", key = "#session"),
-			@CacheEvict(value = "flashcardquestions", key = "#session") })
+	@CacheEvict(value = "questions", allEntries = true)
 	@Override
 	public int[] deleteAllQuestionsWithAnswers(final Session session) {
 		final ViewResult result = db.queryView(createQuery("by_sessionid_variant_active")
@@ -169,10 +280,10 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 				.endKey(ComplexKey.of(session.getId(), ComplexKey.emptyObject()))
 				.reduce(false));
 
-		return deleteAllQuestionDocumentsWithAnswers(result);
+		return deleteAllQuestionDocumentsWithAnswers(session, result);
 	}
 
-	private int[] deleteAllQuestionDocumentsWithAnswers(final ViewResult viewResult) {
+	private int[] deleteAllQuestionDocumentsWithAnswers(final Session session, final ViewResult viewResult) {
 		List<Content> contents = new ArrayList<>();
 		for (final ViewResult.Row row : viewResult.getRows()) {
 			final Content q = new Content();
@@ -182,6 +293,10 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		}
 
 		int[] count = answerRepository.deleteAllAnswersWithQuestions(contents);
+		for (final Content content : contents) {
+			knownRevisions.invalidate(content.getId());
+		}
+		sessionContentCache.evict(session.getId());
 		dbLogger.log("delete", "type", "question", "questionCount", count[0]);
 		dbLogger.log("delete", "type", "answer", "answerCount", count[1]);
 
@@ -227,10 +342,9 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return collectUnansweredQuestionIdsByPiRound(getPreparationQuestionsForUsers(session), answeredQuestions);
 	}
 
-	@Cacheable("lecturequestions")
 	@Override
 	public List<Content> getLectureQuestionsForUsers(final Session session) {
-		return getQuestions(session.getId(), "lecture", true);
+		return sessionContentCache.get(session.getId(), "lecture", () -> loadActiveContents(session));
 	}
 
 	@Override
@@ -238,10 +352,9 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return getQuestions(session.getId(), "lecture");
 	}
 
-	@Cacheable("flashcardquestions")
 	@Override
 	public List<Content> getFlashcardsForUsers(final Session session) {
-		return getQuestions(session.getId(), "flashcard", true);
+		return sessionContentCache.get(session.getId(), "flashcard", () -> loadActiveContents(session));
 	}
 
 	@Override
@@ -249,10 +362,9 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return getQuestions(session.getId(), "flashcard");
 	}
 
-	@Cacheable("preparationquestions")
 	@Override
 	public List<Content> getPreparationQuestionsForUsers(final Session session) {
-		return getQuestions(session.getId(), "preparation", true);
+		return sessionContentCache.get(session.getId(), "preparation", () -> loadActiveContents(session));
 	}
 
 	@Override
@@ -276,13 +388,24 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 						.endKey(ComplexKey.of(endKeys)),
 				Content.class);
 		for (Content content : contents) {
-			content.updateRoundManagementState();
+			rememberRevision(content);
 			//content.setSessionKeyword(session.getKeyword());
 		}
 
 		return contents;
 	}
 
+	@Override
+	public Map<String, Long> getPendingPiRoundEndTimes() {
+		final ViewResult result = db.queryView(createQuery("by_piroundendtime"));
+		final Map<String, Long> endTimes = new HashMap<>();
+		for (final ViewResult.Row row : result.getRows()) {
+			endTimes.put(row.getId(), row.getKeyAsNode().asLong());
+		}
+
+		return endTimes;
+	}
+
 	@Override
 	public int getLectureQuestionCount(final Session session) {
 		/* TODO: reduce code duplication */
@@ -315,8 +438,6 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 
 	/* TODO: Only evict cache entry for the answer's question. This requires some refactoring. */
 	@Caching(evict = { @CacheEvict(value = "questions", allEntries = true),
-			@CacheEvict("skillquestions"),
-			@CacheEvict("lecturequestions"),
 			@CacheEvict(value = "answers", allEntries = true)})
 	@Override
 	public int[] deleteAllLectureQuestionsWithAnswers(final Session session) {
@@ -325,13 +446,11 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 				.endKey(ComplexKey.of(session.getId(), "lecture", ComplexKey.emptyObject()))
 				.reduce(false));
 
-		return deleteAllQuestionDocumentsWithAnswers(result);
+		return deleteAllQuestionDocumentsWithAnswers(session, result);
 	}
 
 	/* TODO: Only evict cache entry for the answer's question. This requires some refactoring. */
 	@Caching(evict = { @CacheEvict(value = "questions", allEntries = true),
-			@CacheEvict("skillquestions"),
-			@CacheEvict("flashcardquestions"),
 			@CacheEvict(value = "answers", allEntries = true)})
 	@Override
 	public int[] deleteAllFlashcardsWithAnswers(final Session session) {
@@ -340,13 +459,11 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 				.endKey(ComplexKey.of(session.getId(), "flashcard", ComplexKey.emptyObject()))
 				.reduce(false));
 
-		return deleteAllQuestionDocumentsWithAnswers(result);
+		return deleteAllQuestionDocumentsWithAnswers(session, result);
 	}
 
 	/* TODO: Only evict cache entry for the answer's question. This requires some refactoring. */
 	@Caching(evict = { @CacheEvict(value = "questions", allEntries = true),
-			@CacheEvict("skillquestions"),
-			@CacheEvict("preparationquestions"),
 			@CacheEvict(value = "answers", allEntries = true)})
 	@Override
 	public int[] deleteAllPreparationQuestionsWithAnswers(final Session session) {
@@ -355,7 +472,7 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 				.endKey(ComplexKey.of(session.getId(), "preparation", ComplexKey.emptyObject()))
 				.reduce(false));
 
-		return deleteAllQuestionDocumentsWithAnswers(result);
+		return deleteAllQuestionDocumentsWithAnswers(session, result);
 	}
 
 	private List<String> collectUnansweredQuestionIds(
@@ -407,11 +524,7 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return contents;
 	}
 
-	@Caching(evict = { @CacheEvict(value = "contents", allEntries = true),
-			@CacheEvict(value = "skillquestions", key = "#session"),
-			@CacheEvict(value = "lecturequestions", key = "#session"),
-			@CacheEvict(value = "preparationquestions", key = "#session"),
-			@CacheEvict(value = "flashcardquestions", key = "#session") })
+	@CacheEvict(value = "contents", allEntries = true)
 	@Override
 	public void publishQuestions(final Session session, final boolean publish, List<Content> contents) {
 		for (final Content content : contents) {
@@ -419,6 +532,10 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		}
 		try {
 			db.executeBulk(contents);
+			for (final Content content : contents) {
+				rememberRevision(content);
+			}
+			sessionContentCache.evict(session.getId());
 		} catch (final DbAccessException e) {
 			logger.error("Could not bulk publish all contents.", e);
 		}
@@ -437,11 +554,7 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return contents;
 	}
 
-	@Caching(evict = { @CacheEvict(value = "contents", allEntries = true),
-			@CacheEvict(value = "skillquestions", key = "#session"),
-			@CacheEvict(value = "lecturequestions", key = "#session"),
-			@CacheEvict(value = "preparationquestions", key = "#session"),
-			@CacheEvict(value = "flashcardquestions", key = "#session") })
+	@CacheEvict(value = "contents", allEntries = true)
 	@Override
 	public void setVotingAdmissions(final Session session, final boolean disableVoting, List<Content> contents) {
 		for (final Content q : contents) {
@@ -452,6 +565,10 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 
 		try {
 			db.executeBulk(contents);
+			for (final Content content : contents) {
+				rememberRevision(content);
+			}
+			sessionContentCache.evict(session.getId());
 		} catch (final DbAccessException e) {
 			logger.error("Could not bulk set voting admission for all contents.", e);
 		}
@@ -494,11 +611,7 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		return new ArrayList<>(uniqueSubjects);
 	}
 
-	@Caching(evict = { @CacheEvict(value = "contents", allEntries = true),
-			@CacheEvict(value = "skillquestions", key = "#session"),
-			@CacheEvict(value = "lecturequestions", key = "#session"),
-			@CacheEvict(value = "preparationquestions", key = "#session"),
-			@CacheEvict(value = "flashcardquestions", key = "#session") })
+	@CacheEvict(value = "contents", allEntries = true)
 	@Override
 	public void resetQuestionsRoundState(final Session session, List<Content> contents) {
 		for (final Content q : contents) {
@@ -507,6 +620,10 @@ public class CouchDbContentRepository extends CouchDbRepositorySupport<Content>
 		}
 		try {
 			db.executeBulk(contents);
+			for (final Content content : contents) {
+				rememberRevision(content);
+			}
+			sessionContentCache.evict(session.getId());
 		} catch (final DbAccessException e) {
 			logger.error("Could not bulk reset all contents round state.", e);
 		}
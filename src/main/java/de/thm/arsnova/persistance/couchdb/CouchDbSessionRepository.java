@@ -17,22 +17,31 @@
  */
 package de.thm.arsnova.persistance.couchdb;
 
+import com.codahale.metrics.annotation.Gauge;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.thm.arsnova.CursorPaginationList;
 import de.thm.arsnova.connector.model.Course;
+import de.thm.arsnova.entities.CommentReadingCount;
 import de.thm.arsnova.entities.LoggedIn;
 import de.thm.arsnova.entities.Session;
 import de.thm.arsnova.entities.SessionInfo;
 import de.thm.arsnova.entities.User;
 import de.thm.arsnova.entities.VisitedSession;
+import de.thm.arsnova.entities.serialization.CouchDbObjectMapperFactory;
 import de.thm.arsnova.entities.transport.Comment;
 import de.thm.arsnova.entities.transport.ImportExportSession;
-import de.thm.arsnova.exceptions.NotFoundException;
 import de.thm.arsnova.persistance.LogEntryRepository;
 import de.thm.arsnova.persistance.MotdRepository;
 import de.thm.arsnova.persistance.SessionRepository;
+import de.thm.arsnova.services.ISessionCounterService;
 import de.thm.arsnova.services.ISessionService;
 import org.ektorp.ComplexKey;
 import org.ektorp.CouchDbConnector;
+import org.ektorp.DbAccessException;
 import org.ektorp.DocumentNotFoundException;
+import org.ektorp.DocumentOperationResult;
 import org.ektorp.UpdateConflictException;
 import org.ektorp.ViewQuery;
 import org.ektorp.ViewResult;
@@ -40,39 +49,119 @@ import org.ektorp.support.CouchDbRepositorySupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.stagemonitor.core.metrics.MonitorGauges;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+@MonitorGauges
 public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session> implements SessionRepository {
+	private static final int VISITED_SESSION_CLEANUP_ATTEMPTS = 3;
+	private static final int VISITED_SESSION_CLEANUP_QUEUE_SIZE = 1000;
+	private static final int PRESENCE_FLUSH_ATTEMPTS = 3;
+
 	private static final Logger logger = LoggerFactory.getLogger(CouchDbSessionRepository.class);
 
+	/* Cleans up the visited sessions of LoggedIn documents without delaying the request. */
+	private final ExecutorService visitedSessionCleanupExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<>(VISITED_SESSION_CLEANUP_QUEUE_SIZE), r -> {
+				final Thread thread = new Thread(r, "visited-session-cleanup");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+	private final Set<String> pendingVisitedSessionCleanups = ConcurrentHashMap.newKeySet();
+
+	/* Presence of users which joined a session since the last flush, coalesced per username. */
+	private final Map<String, PendingPresence> presenceQueue = new ConcurrentHashMap<>();
+
+	/* Presence which has recently been written, used to skip redundant updates without reading the database. */
+	private final Cache<String, Presence> flushedPresence = CacheBuilder.newBuilder()
+			.maximumSize(100000)
+			.expireAfterWrite(PendingPresence.UPDATE_INTERVAL_MS, TimeUnit.MILLISECONDS)
+			.build();
+
+	/* Queries the independent views of session infos concurrently. Initialized once the concurrency is injected. */
+	private ExecutorService viewQueryExecutor;
+
+	private final ViewTiming contentCountViewTiming = new ViewTiming();
+	private final ViewTiming answerCountViewTiming = new ViewTiming();
+	private final ViewTiming commentCountViewTiming = new ViewTiming();
+	private final ViewTiming unreadCommentCountViewTiming = new ViewTiming();
+	private final ViewTiming answeredQuestionsViewTiming = new ViewTiming();
+	private final ViewTiming questionIdsViewTiming = new ViewTiming();
+	private final AtomicLong counterSessionInfos = new AtomicLong();
+
+	@Value("${couchdb.view-query.concurrency:4}")
+	private int viewQueryConcurrency;
+
 	@Autowired
 	private ISessionService sessionService;
 
+	@Autowired
+	private ISessionCounterService sessionCounterService;
+
 	@Autowired
 	private LogEntryRepository dbLogger;
 
 	@Autowired
 	private MotdRepository motdRepository;
 
+	private final ObjectMapper objectMapper;
+
 	public CouchDbSessionRepository(CouchDbConnector db, boolean createIfNotExists) {
 		super(Session.class, db, createIfNotExists);
+		objectMapper = new CouchDbObjectMapperFactory().createObjectMapper(db);
+	}
+
+	@PostConstruct
+	public void init() {
+		/* Queries are only handed over to idle threads. If all threads are busy, the calling thread runs the query itself
+		 * instead of queueing it behind the queries of other requests. */
+		viewQueryExecutor = new ThreadPoolExecutor(viewQueryConcurrency, viewQueryConcurrency, 0L, TimeUnit.MILLISECONDS,
+				new SynchronousQueue<>(), r -> {
+					final Thread thread = new Thread(r, "session-info-view-query");
+					thread.setDaemon(true);
+
+					return thread;
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
 	}
 
 	@Override
-	@Cacheable("sessions")
+	@Cacheable(value = "sessions", sync = true)
 	public Session getSessionFromKeyword(final String keyword) {
 		final List<Session> session = queryView("by_keyword", keyword);
 
@@ -80,7 +169,7 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 	}
 
 	@Override
-	@Cacheable("sessions")
+	@Cacheable(value = "sessions", sync = true)
 	public Session getSessionFromId(final String sessionId) {
 		return get(sessionId);
 	}
@@ -138,68 +227,128 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 	}
 
 	@Override
-	public List<Session> getVisitedSessionsForUsername(String username, final int start, final int limit) {
-		final int qSkip = start > 0 ? start : -1;
-		final int qLimit = limit > 0 ? limit : -1;
-
+	public List<Session> getVisitedSessionsForUsername(String username, final int start, final int limit, final String sortby) {
+		final ViewResult visitedSessionResult;
 		try {
-			ViewResult visitedSessionResult = db.queryView(createQuery("visited_sessions_by_user")
+			visitedSessionResult = db.queryView(createQuery("visited_sessions_by_user")
 					.designDocId("_design/LoggedIn").key(username));
-			List<Session> visitedSessions = visitedSessionResult.getRows().stream().map(vs -> {
-				final Session s = new Session();
-				s.setId(vs.getValueAsNode().get("_id").asText());
-				s.setKeyword(vs.getValueAsNode().get("keyword").asText());
-				s.setName(vs.getValueAsNode().get("name").asText());
+		} catch (DocumentNotFoundException e) {
+			return new ArrayList<>();
+		}
+		final List<String> visitedSessionIds = visitedSessionResult.getRows().stream()
+				.map(vs -> vs.getValueAsNode().get("_id").asText())
+				.collect(Collectors.toCollection(ArrayList::new));
+		/* Include sessions which have been joined since the last presence flush. */
+		final PendingPresence pending = presenceQueue.get(username);
+		if (pending != null) {
+			for (final String id : pending.getVisitedSessionIds()) {
+				if (!visitedSessionIds.contains(id)) {
+					visitedSessionIds.add(id);
+				}
+			}
+		}
+		if (visitedSessionIds.isEmpty()) {
+			return new ArrayList<>();
+		}
 
-				return s;
-			}).collect(Collectors.toList());
+		/* Load all visited sessions with a single request. Rows of deleted sessions do not contain a document and rows of
+		 * IDs which never existed or have been purged are errors. Both are ignored, so these sessions are missing. */
+		final Map<String, Session> sessions = new HashMap<>();
+		for (final Session session : db.queryView(
+				new ViewQuery().allDocs().keys(visitedSessionIds).includeDocs(true).ignoreNotFound(true), Session.class)) {
+			if (session != null) {
+				sessions.put(session.getId(), session);
+			}
+		}
 
-			if (visitedSessions.isEmpty()) {
-				return new ArrayList<>();
+		// Filter sessions that don't exist anymore, also filter my own sessions
+		final List<Session> result = new ArrayList<>();
+		final Set<String> staleSessionIds = new HashSet<>();
+		for (final String id : visitedSessionIds) {
+			final Session session = sessions.get(id);
+			if (session != null && session.getCreator() != null && !session.getCreator().equals(username)) {
+				result.add(session);
+			} else {
+				staleSessionIds.add(id);
 			}
+		}
+		if (!staleSessionIds.isEmpty() && !visitedSessionResult.getRows().isEmpty()) {
+			removeVisitedSessionsAsync(visitedSessionResult.getRows().get(0).getId(), staleSessionIds);
+		}
+
+		/* Visited sessions are not part of a sorted view, so they are sorted before the page is selected. A collator
+		 * is used to order names like the collation of the sorted views. */
+		final Collator collator = Collator.getInstance(Locale.ROOT);
+		collator.setStrength(Collator.SECONDARY);
+		final Map<String, CollationKey> sortKeys = new HashMap<>();
+		for (final Session session : result) {
+			sortKeys.put(session.getId(), collator.getCollationKey(getSortValue(session, sortby)));
+		}
+		result.sort(Comparator.comparing(session -> sortKeys.get(session.getId())));
 
-			// Filter sessions that don't exist anymore, also filter my own sessions
-			final List<Session> result = new ArrayList<>();
-			final List<Session> filteredSessions = new ArrayList<>();
-			for (final Session s : visitedSessions) {
+		final int from = Math.min(start > 0 ? start : 0, result.size());
+		final int to = limit > 0 ? Math.min(from + limit, result.size()) : result.size();
+
+		return new ArrayList<>(result.subList(from, to));
+	}
+
+	/**
+	 * Removes sessions from the visited sessions of a LoggedIn document in the background. Only one removal per
+	 * document is pending at a time.
+	 */
+	private void removeVisitedSessionsAsync(final String loggedInId, final Set<String> sessionIds) {
+		if (!pendingVisitedSessionCleanups.add(loggedInId)) {
+			return;
+		}
+		try {
+			visitedSessionCleanupExecutor.execute(() -> {
 				try {
-					/* FIXME: caching (getSessionFromKeyword) */
-					final Session session = getSessionFromKeyword(s.getKeyword());
-					if (session != null && !(session.getCreator().equals(username))) {
-						result.add(session);
-					} else {
-						filteredSessions.add(s);
-					}
-				} catch (final NotFoundException e) {
-					filteredSessions.add(s);
-				}
-			}
-			if (filteredSessions.isEmpty()) {
-				return result;
-			}
-			// Update document to remove sessions that don't exist anymore
-				List<VisitedSession> newVisitedSessions = new ArrayList<>();
-				for (final Session s : result) {
-					newVisitedSessions.add(new VisitedSession(s));
+					removeVisitedSessions(loggedInId, sessionIds);
+				} finally {
+					pendingVisitedSessionCleanups.remove(loggedInId);
 				}
+			});
+		} catch (final RejectedExecutionException e) {
+			pendingVisitedSessionCleanups.remove(loggedInId);
+			logger.debug("Skipped clean up of LoggedIn document {}.", loggedInId);
+		}
+	}
 
+	private void removeVisitedSessions(final String loggedInId, final Set<String> sessionIds) {
+		for (int attempt = 0; attempt < VISITED_SESSION_CLEANUP_ATTEMPTS; attempt++) {
 			try {
-				final LoggedIn loggedIn = db.get(LoggedIn.class, visitedSessionResult.getRows().get(0).getId());
-				loggedIn.setVisitedSessions(newVisitedSessions);
+				final LoggedIn loggedIn = db.get(LoggedIn.class, loggedInId);
+				final List<VisitedSession> visitedSessions = new ArrayList<>();
+				for (final VisitedSession vs : loggedIn.getVisitedSessions()) {
+					if (!sessionIds.contains(vs.getId())) {
+						visitedSessions.add(vs);
+					}
+				}
+				loggedIn.setVisitedSessions(visitedSessions);
 				db.update(loggedIn);
-			} catch (UpdateConflictException e) {
-				logger.error("Could not clean up LoggedIn document of {}.", username, e);
-			}
 
-			return result;
-		} catch (DocumentNotFoundException e) {
-			return new ArrayList<>();
+				return;
+			} catch (final UpdateConflictException e) {
+				logger.debug("Conflict while cleaning up LoggedIn document {}, retrying.", loggedInId);
+			} catch (final DbAccessException e) {
+				logger.error("Could not clean up LoggedIn document {}.", loggedInId, e);
+
+				return;
+			}
 		}
+		logger.error("Could not clean up LoggedIn document {} due to conflicts.", loggedInId);
+	}
+
+	@PreDestroy
+	public void destroy() {
+		flushPresence();
+		visitedSessionCleanupExecutor.shutdown();
+		viewQueryExecutor.shutdown();
 	}
 
 	@Override
-	public List<SessionInfo> getMyVisitedSessionsInfo(final User user, final int start, final int limit) {
-		List<Session> sessions = getVisitedSessionsForUsername(user.getUsername(), start, limit);
+	public List<SessionInfo> getMyVisitedSessionsInfo(final User user, final int start, final int limit, final String sortby) {
+		List<Session> sessions = getVisitedSessionsForUsername(user.getUsername(), start, limit, sortby);
 		if (sessions.isEmpty()) {
 			return new ArrayList<>();
 		}
@@ -440,26 +589,54 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 	}
 
 	@Override
-	public List<Session> getMySessions(final User user, final int start, final int limit) {
-		return getSessionsForUsername(user.getUsername(), start, limit);
+	public List<Session> getMySessions(final User user, final int start, final int limit, final String sortby,
+			final String cursor) {
+		return getSessionsForUsername(user.getUsername(), start, limit, sortby, cursor);
 	}
 
+	/**
+	 * Retrieves a page of the user's sessions from a view sorted by creator and lowercased name or short name. One
+	 * additional row is loaded for each page. Its key and document ID are returned to the client as cursor of the
+	 * following page, so the following page is loaded by key instead of skipping all previous rows. Pages requested
+	 * without a cursor are loaded by skipping rows.
+	 */
 	@Override
-	public List<Session> getSessionsForUsername(String username, final int start, final int limit) {
-		final int qSkip = start > 0 ? start : -1;
-		final int qLimit = limit > 0 ? limit : -1;
+	public List<Session> getSessionsForUsername(String username, final int start, final int limit, final String sortby,
+			final String cursor) {
+		final String view = "shortname".equals(sortby) ? "by_creator_shortname" : "by_creator_name";
+		final ViewQuery query = createQuery(view)
+				.endKey(ComplexKey.of(username, ComplexKey.emptyObject()))
+				.includeDocs(true);
+		final PageCursor pageCursor = PageCursor.decode(cursor, view);
+		if (pageCursor != null) {
+			query.startKey(ComplexKey.of(username, pageCursor.sortKey)).startDocId(pageCursor.sessionId);
+		} else {
+			query.startKey(ComplexKey.of(username));
+			if (start > 0) {
+				query.skip(start);
+			}
+		}
+		if (limit > 0) {
+			query.limit(limit + 1);
+		}
 
-		/* TODO: Only load IDs and check against cache for data. */
-		List<Session> sessions = db.queryView(
-				createQuery("partial_by_sessiontype_creator_name")
-						.skip(qSkip)
-						.limit(qLimit)
-						.startKey(ComplexKey.of(null, username))
-						.endKey(ComplexKey.of(null, username, ComplexKey.emptyObject()))
-						.includeDocs(true),
-				Session.class);
+		final List<Session> sessions = new ArrayList<>();
+		String nextCursor = null;
+		for (final ViewResult.Row row : db.queryView(query).getRows()) {
+			if (limit > 0 && sessions.size() == limit) {
+				nextCursor = new PageCursor(view, row.getKeyAsNode().get(1).asText(), row.getId()).encode();
+				break;
+			}
+			sessions.add(objectMapper.convertValue(row.getDocAsNode(), Session.class));
+		}
+
+		return new CursorPaginationList<>(sessions, nextCursor);
+	}
+
+	private static String getSortValue(final Session session, final String sortby) {
+		final String value = "shortname".equals(sortby) ? session.getShortName() : session.getName();
 
-		return sessions;
+		return value != null ? value : "";
 	}
 
 	@Override
@@ -495,26 +672,81 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 	}
 
 	@Override
-	public List<SessionInfo> getMySessionsInfo(final User user, final int start, final int limit) {
-		final List<Session> sessions = this.getMySessions(user, start, limit);
+	public List<SessionInfo> getMySessionsInfo(final User user, final int start, final int limit, final String sortby,
+			final String cursor) {
+		final List<Session> sessions = this.getMySessions(user, start, limit, sortby, cursor);
 		if (sessions.isEmpty()) {
 			return new ArrayList<>();
 		}
-		return getInfosForSessions(sessions);
+		final String nextCursor = sessions instanceof CursorPaginationList
+				? ((CursorPaginationList<?>) sessions).getNextCursor() : null;
+
+		return new CursorPaginationList<>(getInfosForSessions(sessions), nextCursor);
 	}
 
+	/**
+	 * Builds the infos of the sessions. Counts of sessions which are kept up to date by the session counter service are
+	 * used directly. For the remaining sessions, the four grouped count views are queried concurrently.
+	 */
 	private List<SessionInfo> getInfosForSessions(final List<Session> sessions) {
-		List<String> sessionIds = sessions.stream().map(Session::getId).collect(Collectors.toList());
-		final ViewQuery questionCountView = createQuery("by_sessionid").designDocId("_design/Content")
-				.group(true).keys(sessionIds);
-		final ViewQuery answerCountView = createQuery("by_sessionid").designDocId("_design/Answer")
-				.group(true).keys(sessionIds);
-		final ViewQuery commentCountView = createQuery("by_sessionid").designDocId("_design/Comment")
-				.group(true).keys(sessionIds);
-		final ViewQuery unreadCommentCountView = createQuery("by_sessionid_read").designDocId("_design/Comment")
-				.group(true).keys(sessions.stream().map(session -> ComplexKey.of(session.getId(), false)).collect(Collectors.toList()));
+		final List<Session> uncounted = new ArrayList<>();
+		final Set<String> uncountedIds = new HashSet<>();
+		for (final Session session : sessions) {
+			if (!sessionCounterService.isLoaded(session)) {
+				uncounted.add(session);
+				uncountedIds.add(session.getId());
+			}
+		}
+		counterSessionInfos.addAndGet(sessions.size() - uncounted.size());
+
+		Map<String, Integer> questionCountMap = new HashMap<>();
+		Map<String, Integer> answerCountMap = new HashMap<>();
+		Map<String, Integer> commentCountMap = new HashMap<>();
+		Map<String, Integer> unreadCommentCountMap = new HashMap<>();
+		if (!uncounted.isEmpty()) {
+			final List<String> sessionIds = uncounted.stream().map(Session::getId).collect(Collectors.toList());
+			final ViewQuery questionCountView = createQuery("by_sessionid").designDocId("_design/Content")
+					.group(true).keys(sessionIds);
+			final ViewQuery answerCountView = createQuery("by_sessionid").designDocId("_design/Answer")
+					.group(true).keys(sessionIds);
+			final ViewQuery commentCountView = createQuery("by_sessionid").designDocId("_design/Comment")
+					.group(true).keys(sessionIds);
+			final ViewQuery unreadCommentCountView = createQuery("by_sessionid_read").designDocId("_design/Comment")
+					.group(true).keys(uncounted.stream().map(session -> ComplexKey.of(session.getId(), false)).collect(Collectors.toList()));
+
+			final CompletableFuture<Map<String, Integer>> questionCounts =
+					queryCountsAsync(questionCountView, contentCountViewTiming);
+			final CompletableFuture<Map<String, Integer>> answerCounts =
+					queryCountsAsync(answerCountView, answerCountViewTiming);
+			final CompletableFuture<Map<String, Integer>> commentCounts =
+					queryCountsAsync(commentCountView, commentCountViewTiming);
+			final CompletableFuture<Map<String, Integer>> unreadCommentCounts =
+					queryCountsAsync(unreadCommentCountView, unreadCommentCountViewTiming);
+			questionCountMap = join(questionCounts);
+			answerCountMap = join(answerCounts);
+			commentCountMap = join(commentCounts);
+			unreadCommentCountMap = join(unreadCommentCounts);
+		}
 
-		return getSessionInfoData(sessions, questionCountView, answerCountView, commentCountView, unreadCommentCountView);
+		List<SessionInfo> sessionInfos = new ArrayList<>();
+		for (Session session : sessions) {
+			SessionInfo info = new SessionInfo(session);
+			if (!uncountedIds.contains(session.getId())) {
+				info.setNumQuestions(sessionCounterService.getContentCount(session));
+				info.setNumAnswers(sessionCounterService.getAnswerCount(session, "lecture")
+						+ sessionCounterService.getAnswerCount(session, "preparation"));
+				final CommentReadingCount comments = sessionCounterService.getCommentReadingCount(session);
+				info.setNumInterposed(comments.getRead() + comments.getUnread());
+				info.setNumUnredInterposed(comments.getUnread());
+			} else {
+				info.setNumQuestions(questionCountMap.getOrDefault(session.getId(), 0));
+				info.setNumAnswers(answerCountMap.getOrDefault(session.getId(), 0));
+				info.setNumInterposed(commentCountMap.getOrDefault(session.getId(), 0));
+				info.setNumUnredInterposed(unreadCommentCountMap.getOrDefault(session.getId(), 0));
+			}
+			sessionInfos.add(info);
+		}
+		return sessionInfos;
 	}
 
 	private List<SessionInfo> getInfosForVisitedSessions(final List<Session> sessions, final User user) {
@@ -531,8 +763,13 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 		final Map<String, Set<String>> answeredQuestionsMap = new HashMap<>();
 		final Map<String, Set<String>> questionIdMap = new HashMap<>();
 
+		/* Both views are independent, so they are queried concurrently. */
+		final CompletableFuture<ViewResult> answeredQuestions =
+				queryViewAsync(answeredQuestionsView, answeredQuestionsViewTiming);
+		final CompletableFuture<ViewResult> questionIds = queryViewAsync(questionIdsView, questionIdsViewTiming);
+
 		// Maps a session ID to a set of question IDs of answered questions of that session
-		for (final ViewResult.Row row : db.queryView(answeredQuestionsView).getRows()) {
+		for (final ViewResult.Row row : join(answeredQuestions).getRows()) {
 			final String sessionId = row.getKey();
 			final String questionId = row.getValue();
 			Set<String> questionIdsInSession = answeredQuestionsMap.get(sessionId);
@@ -544,7 +781,7 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 		}
 
 		// Maps a session ID to a set of question IDs of that session
-		for (final ViewResult.Row row : db.queryView(questionIdsView).getRows()) {
+		for (final ViewResult.Row row : join(questionIds).getRows()) {
 			final String sessionId = row.getKey();
 			final String questionId = row.getId();
 			Set<String> questionIdsInSession = questionIdMap.get(sessionId);
@@ -585,82 +822,277 @@ public class CouchDbSessionRepository extends CouchDbRepositorySupport<Session>
 		return sessionInfos;
 	}
 
-	private List<SessionInfo> getSessionInfoData(final List<Session> sessions,
-												 final ViewQuery questionCountView,
-												 final ViewQuery answerCountView,
-												 final ViewQuery commentCountView,
-												 final ViewQuery unreadCommentCountView) {
-		Map<String, Integer> questionCountMap = db.queryView(questionCountView).getRows()
-				.stream().map(row -> new AbstractMap.SimpleImmutableEntry<>(row.getKey(), row.getValueAsInt()))
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-		Map<String, Integer> answerCountMap = db.queryView(answerCountView).getRows()
-				.stream().map(row -> new AbstractMap.SimpleImmutableEntry<>(row.getKey(), row.getValueAsInt()))
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-		Map<String, Integer> commentCountMap = db.queryView(commentCountView).getRows()
-				.stream().map(row -> new AbstractMap.SimpleImmutableEntry<>(row.getKey(), row.getValueAsInt()))
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-		Map<String, Integer> unreadCommentCountMap = db.queryView(unreadCommentCountView).getRows()
+	private CompletableFuture<ViewResult> queryViewAsync(final ViewQuery query, final ViewTiming timing) {
+		return CompletableFuture.supplyAsync(() -> {
+			final long start = System.nanoTime();
+			try {
+				return db.queryView(query);
+			} finally {
+				timing.record(System.nanoTime() - start);
+			}
+		}, viewQueryExecutor);
+	}
+
+	private CompletableFuture<Map<String, Integer>> queryCountsAsync(final ViewQuery query, final ViewTiming timing) {
+		return queryViewAsync(query, timing).thenApply(result -> result.getRows()
 				.stream().map(row -> new AbstractMap.SimpleImmutableEntry<>(row.getKey(), row.getValueAsInt()))
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+	}
 
-		List<SessionInfo> sessionInfos = new ArrayList<>();
-		for (Session session : sessions) {
-			int numQuestions = 0;
-			int numAnswers = 0;
-			int numComments = 0;
-			int numUnreadComments = 0;
-			if (questionCountMap.containsKey(session.getId())) {
-				numQuestions = questionCountMap.get(session.getId());
-			}
-			if (answerCountMap.containsKey(session.getId())) {
-				numAnswers = answerCountMap.get(session.getId());
-			}
-			if (commentCountMap.containsKey(session.getId())) {
-				numComments = commentCountMap.get(session.getId());
-			}
-			if (unreadCommentCountMap.containsKey(session.getId())) {
-				numUnreadComments = unreadCommentCountMap.get(session.getId());
+	private static <T> T join(final CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
 			}
-
-			SessionInfo info = new SessionInfo(session);
-			info.setNumQuestions(numQuestions);
-			info.setNumAnswers(numAnswers);
-			info.setNumInterposed(numComments);
-			info.setNumUnredInterposed(numUnreadComments);
-			sessionInfos.add(info);
+			throw e;
 		}
-		return sessionInfos;
 	}
 
+	@Gauge
+	public long sessionInfoContentCountViewTimeUs() {
+		return contentCountViewTiming.getAverageTimeUs();
+	}
+
+	@Gauge
+	public long sessionInfoAnswerCountViewTimeUs() {
+		return answerCountViewTiming.getAverageTimeUs();
+	}
+
+	@Gauge
+	public long sessionInfoCommentCountViewTimeUs() {
+		return commentCountViewTiming.getAverageTimeUs();
+	}
+
+	@Gauge
+	public long sessionInfoUnreadCommentCountViewTimeUs() {
+		return unreadCommentCountViewTiming.getAverageTimeUs();
+	}
+
+	@Gauge
+	public long sessionInfoAnsweredQuestionsViewTimeUs() {
+		return answeredQuestionsViewTiming.getAverageTimeUs();
+	}
+
+	@Gauge
+	public long sessionInfoQuestionIdsViewTimeUs() {
+		return questionIdsViewTiming.getAverageTimeUs();
+	}
+
+	@Gauge
+	public long sessionInfosFromCounters() {
+		return counterSessionInfos.get();
+	}
+
+	/**
+	 * Records the user's presence in the session. The presence is only kept in memory and coalesced per user until it
+	 * is written by {@link #flushPresence()}, so joining a session does not cause any database requests.
+	 *
+	 * @return a transient LoggedIn object which reflects the recorded presence
+	 */
 	@Override
 	public LoggedIn registerAsOnlineUser(final User user, final Session session) {
-		LoggedIn loggedIn = new LoggedIn();
-		try {
-			List<LoggedIn> loggedInList = db.queryView(createQuery("all").designDocId("_design/LoggedIn").key(user.getUsername()), LoggedIn.class);
+		final long now = System.currentTimeMillis();
+		final LoggedIn loggedIn = new LoggedIn();
+		loggedIn.setUser(user.getUsername());
+		loggedIn.setSessionId(session.getId());
+		loggedIn.setTimestamp(now);
+
+		/* Do not clutter CouchDB. Only update once every 3 hours per session. */
+		final Presence flushed = flushedPresence.getIfPresent(user.getUsername());
+		if (flushed != null && flushed.sessionId.equals(session.getId())
+				&& flushed.timestamp > now - PendingPresence.UPDATE_INTERVAL_MS) {
+			return loggedIn;
+		}
+		presenceQueue.compute(user.getUsername(), (username, pending) -> {
+			final PendingPresence presence = pending != null ? pending : new PendingPresence();
+			presence.record(session, now);
 
-			if (!loggedInList.isEmpty()) {
-				loggedIn = loggedInList.get(0);
+			return presence;
+		});
+
+		return loggedIn;
+	}
+
+	/**
+	 * Writes the coalesced presence of all users which joined a session since the last flush. Existing LoggedIn
+	 * documents are loaded with a single request and saved with a single bulk request. Documents which have been
+	 * changed concurrently are reloaded and merged again. If conflicts remain, the presence is queued for the next
+	 * flush.
+	 */
+	@Scheduled(fixedDelayString = "${couchdb.presence.flush-interval:10000}")
+	public void flushPresence() {
+		if (presenceQueue.isEmpty()) {
+			// no need to send an empty bulk request.
+			return;
+		}
 
-				/* Do not clutter CouchDB. Only update once every 3 hours per session. */
-				if (loggedIn.getSessionId().equals(session.getId()) && loggedIn.getTimestamp() > System.currentTimeMillis() - 3 * 3600000) {
-					return loggedIn;
+		final Map<String, PendingPresence> batch = new HashMap<>();
+		for (final String username : presenceQueue.keySet()) {
+			final PendingPresence presence = presenceQueue.remove(username);
+			if (presence != null) {
+				batch.put(username, presence);
+			}
+		}
+
+		/* Presence which could not be written for other reasons than conflicts is retried by the next flush. */
+		final Map<String, PendingPresence> failed = new HashMap<>();
+		for (int attempt = 0; attempt < PRESENCE_FLUSH_ATTEMPTS && !batch.isEmpty(); attempt++) {
+			try {
+				final Map<String, LoggedIn> existing = new HashMap<>();
+				for (final LoggedIn loggedIn : db.queryView(createQuery("all").designDocId("_design/LoggedIn")
+						.keys(batch.keySet()), LoggedIn.class)) {
+					existing.putIfAbsent(loggedIn.getUser(), loggedIn);
+				}
+
+				final List<LoggedIn> updates = new ArrayList<>();
+				final Map<String, String> usernamesById = new HashMap<>();
+				for (final Map.Entry<String, PendingPresence> entry : new ArrayList<>(batch.entrySet())) {
+					LoggedIn loggedIn = existing.get(entry.getKey());
+					if (loggedIn == null) {
+						loggedIn = new LoggedIn();
+						loggedIn.setUser(entry.getKey());
+					}
+					if (entry.getValue().mergeInto(loggedIn)) {
+						/* IDs are assigned to new documents, so the results of the bulk request can be mapped back. */
+						if (loggedIn.getId() == null) {
+							loggedIn.setId(UUID.randomUUID().toString().replace("-", ""));
+						}
+						updates.add(loggedIn);
+						usernamesById.put(loggedIn.getId(), entry.getKey());
+					} else {
+						/* The stored document is already up to date. */
+						rememberFlushedPresence(loggedIn);
+						batch.remove(entry.getKey());
+					}
+				}
+				if (updates.isEmpty()) {
+					break;
 				}
+
+				final Set<String> conflicts = new HashSet<>();
+				final Set<String> errors = new HashSet<>();
+				for (final DocumentOperationResult error : db.executeBulk(updates)) {
+					final String username = usernamesById.get(error.getId());
+					if (username == null) {
+						logger.error("Unexpected bulk result for LoggedIn document {}: {}.", error.getId(), error.getError());
+					} else if ("conflict".equals(error.getError())) {
+						conflicts.add(username);
+					} else {
+						logger.error("Could not save LoggedIn document {}: {}.", error.getId(), error.getReason());
+						errors.add(username);
+					}
+				}
+				for (final LoggedIn loggedIn : updates) {
+					final String username = loggedIn.getUser();
+					if (errors.contains(username)) {
+						failed.put(username, batch.get(username));
+					} else if (!conflicts.contains(username)) {
+						rememberFlushedPresence(loggedIn);
+					}
+				}
+				batch.keySet().retainAll(conflicts);
+				if (!batch.isEmpty()) {
+					logger.debug("Conflicts while saving {} LoggedIn documents, merging again.", batch.size());
+				}
+			} catch (final DbAccessException e) {
+				logger.error("Could not save {} LoggedIn documents.", batch.size(), e);
+				break;
 			}
+		}
+		failed.putAll(batch);
 
-			loggedIn.setUser(user.getUsername());
-			loggedIn.setSessionId(session.getId());
-			loggedIn.addVisitedSession(session);
-			loggedIn.updateTimestamp();
+		/* Keep the remaining presence for the next flush. Newer presence recorded meanwhile takes precedence. */
+		for (final Map.Entry<String, PendingPresence> entry : failed.entrySet()) {
+			presenceQueue.merge(entry.getKey(), entry.getValue(), (pending, remaining) -> {
+				pending.mergeFrom(remaining);
 
-			if (loggedIn.getId() == null) {
-				db.create(loggedIn);
-			} else {
-				db.update(loggedIn);
+				return pending;
+			});
+		}
+	}
+
+	private void rememberFlushedPresence(final LoggedIn loggedIn) {
+		if (loggedIn.getSessionId() != null) {
+			flushedPresence.put(loggedIn.getUser(), new Presence(loggedIn.getSessionId(), loggedIn.getTimestamp()));
+		}
+	}
+
+	/**
+	 * Position in a sorted session view. It is passed to clients as an opaque URL-safe token.
+	 */
+	private static class PageCursor {
+		private static final char SEPARATOR = '\n';
+
+		private final String view;
+		private final String sortKey;
+		private final String sessionId;
+
+		private PageCursor(final String view, final String sortKey, final String sessionId) {
+			this.view = view;
+			this.sortKey = sortKey;
+			this.sessionId = sessionId;
+		}
+
+		private String encode() {
+			final String value = view + SEPARATOR + sessionId + SEPARATOR + sortKey;
+
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Decodes a cursor of the view.
+		 *
+		 * @return the cursor or <code>null</code> if no valid cursor of the view is given
+		 */
+		private static PageCursor decode(final String cursor, final String view) {
+			if (cursor == null || cursor.isEmpty()) {
+				return null;
 			}
-		} catch (final UpdateConflictException e) {
-			logger.error("Could not save LoggedIn document of {}.", user.getUsername(), e);
+			final String value;
+			try {
+				value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			} catch (final IllegalArgumentException e) {
+				logger.debug("Ignoring malformed session list cursor {}.", cursor);
+
+				return null;
+			}
+			final int viewEnd = value.indexOf(SEPARATOR);
+			final int idEnd = viewEnd < 0 ? -1 : value.indexOf(SEPARATOR, viewEnd + 1);
+			if (idEnd < 0 || !view.equals(value.substring(0, viewEnd))) {
+				logger.debug("Ignoring session list cursor {} which does not belong to view {}.", cursor, view);
+
+				return null;
+			}
+
+			return new PageCursor(view, value.substring(idEnd + 1), value.substring(viewEnd + 1, idEnd));
+		}
+	}
+
+	private static class ViewTiming {
+		private final AtomicLong queries = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+
+		private void record(final long nanos) {
+			queries.incrementAndGet();
+			totalNanos.addAndGet(nanos);
 		}
 
-		return loggedIn;
+		private long getAverageTimeUs() {
+			final long count = queries.get();
+
+			return count == 0 ? 0 : totalNanos.get() / count / 1000;
+		}
+	}
+
+	private static class Presence {
+		private final String sessionId;
+		private final long timestamp;
+
+		private Presence(final String sessionId, final long timestamp) {
+			this.sessionId = sessionId;
+			this.timestamp = timestamp;
+		}
 	}
 }
@@ -15,7 +15,7 @@ public class CouchDbSessionStatisticsRepository extends CouchDbRepositorySupport
 		super(Object.class, db, "learning_progress", createIfNotExists);
 	}
 
-	@Cacheable("learningprogress")
+	@Cacheable(value = "learningprogress", sync = true)
 	@Override
 	public CourseScore getLearningProgress(final Session session) {
 		final ViewResult maximumValueResult = db.queryView(createQuery("maximum_value_of_question")
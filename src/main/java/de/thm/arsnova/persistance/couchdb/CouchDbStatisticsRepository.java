@@ -20,7 +20,7 @@ public class CouchDbStatisticsRepository extends CouchDbRepositorySupport implem
 		super(Object.class, db, "statistics", createIfNotExists);
 	}
 
-	@Cacheable("statistics")
+	@Cacheable(value = "statistics", sync = true)
 	@Override
 	public Statistics getStatistics() {
 		final Statistics stats = new Statistics();
@@ -0,0 +1,84 @@
+package de.thm.arsnova.persistance.couchdb;
+
+import de.thm.arsnova.entities.LoggedIn;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.entities.VisitedSession;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Presence of a single user which has not been written yet: the most recently joined session and all sessions
+ * joined since the last flush.
+ */
+class PendingPresence {
+	/* Do not clutter CouchDB. Only update once every 3 hours per session. */
+	static final long UPDATE_INTERVAL_MS = 3 * 3600000;
+
+	private String sessionId;
+	private long timestamp;
+	private final Map<String, VisitedSession> visitedSessions = new LinkedHashMap<>();
+
+	synchronized void record(final Session session, final long time) {
+		if (time >= timestamp) {
+			sessionId = session.getId();
+			timestamp = time;
+		}
+		visitedSessions.putIfAbsent(session.getId(), new VisitedSession(session));
+	}
+
+	/**
+	 * Adds presence which could not be written. The more recent current session wins and visited sessions are joined.
+	 */
+	synchronized void mergeFrom(final PendingPresence other) {
+		synchronized (other) {
+			if (other.timestamp > timestamp) {
+				sessionId = other.sessionId;
+				timestamp = other.timestamp;
+			}
+			for (final Map.Entry<String, VisitedSession> entry : other.visitedSessions.entrySet()) {
+				visitedSessions.putIfAbsent(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	synchronized List<String> getVisitedSessionIds() {
+		return new ArrayList<>(visitedSessions.keySet());
+	}
+
+	/**
+	 * Applies the presence to the stored document. Visited sessions are added, and the current session is only
+	 * replaced by a more recent one.
+	 *
+	 * @return <code>true</code> if the document has to be saved
+	 */
+	synchronized boolean mergeInto(final LoggedIn loggedIn) {
+		boolean changed = loggedIn.getId() == null;
+		final Set<String> visitedIds = new HashSet<>();
+		for (final VisitedSession vs : loggedIn.getVisitedSessions()) {
+			visitedIds.add(vs.getId());
+		}
+		for (final VisitedSession vs : visitedSessions.values()) {
+			if (visitedIds.add(vs.getId())) {
+				loggedIn.getVisitedSessions().add(vs);
+				changed = true;
+			}
+		}
+		if (timestamp >= loggedIn.getTimestamp() || loggedIn.getSessionId() == null) {
+			if (!sessionId.equals(loggedIn.getSessionId())
+					|| loggedIn.getTimestamp() <= timestamp - UPDATE_INTERVAL_MS) {
+				changed = true;
+			}
+			if (changed) {
+				loggedIn.setSessionId(sessionId);
+				loggedIn.setTimestamp(timestamp);
+			}
+		}
+
+		return changed;
+	}
+}
@@ -20,7 +20,6 @@ package de.thm.arsnova.security;
 import de.thm.arsnova.entities.Comment;
 import de.thm.arsnova.entities.Content;
 import de.thm.arsnova.entities.Session;
-import de.thm.arsnova.entities.User;
 import de.thm.arsnova.exceptions.UnauthorizedException;
 import de.thm.arsnova.persistance.CommentRepository;
 import de.thm.arsnova.persistance.ContentRepository;
@@ -35,17 +34,24 @@ import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.core.Authentication;
 
+import javax.annotation.PostConstruct;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Provides access control methods that can be used in annotations.
+ *
+ * Decisions for sessions, contents and comments are cached by {@link PermissionDecisionCache}.
  */
 public class ApplicationPermissionEvaluator implements PermissionEvaluator {
 
 	@Value("${security.admin-accounts}")
 	private String[] adminAccounts;
 
+	private Set<String> adminAccountSet;
+
 	@Autowired
 	private SessionRepository sessionRepository;
 
@@ -55,22 +61,36 @@ public class ApplicationPermissionEvaluator implements PermissionEvaluator {
 	@Autowired
 	private ContentRepository contentRepository;
 
+	@Autowired
+	private PermissionDecisionCache permissionDecisionCache;
+
+	@PostConstruct
+	public void init() {
+		adminAccountSet = new HashSet<>(Arrays.asList(adminAccounts));
+	}
+
 	@Override
 	public boolean hasPermission(
 			final Authentication authentication,
 			final Object targetDomainObject,
 			final Object permission
 			) {
-		final String username = getUsername(authentication);
-		if (checkAdminPermission(username)) {
-			return true;
-		} else if (
-				targetDomainObject instanceof Session
-				&& checkSessionPermission(username, ((Session) targetDomainObject).getKeyword(), permission)
-				) {
-			return true;
+		final long start = System.nanoTime();
+		try {
+			final String username = getUsername(authentication);
+			if (checkAdminPermission(username)) {
+				return true;
+			} else if (
+					targetDomainObject instanceof Session
+					&& checkPermission(username, PermissionDecisionCache.SESSION,
+							((Session) targetDomainObject).getKeyword(), permission)
+					) {
+				return true;
+			}
+			return false;
+		} finally {
+			permissionDecisionCache.recordCheck(System.nanoTime() - start);
 		}
-		return false;
 	}
 
 	@Override
@@ -80,80 +100,116 @@ public class ApplicationPermissionEvaluator implements PermissionEvaluator {
 			final String targetType,
 			final Object permission
 			) {
-		final String username = getUsername(authentication);
-		if (checkAdminPermission(username)) {
-			return true;
-		} else if (
-				"session".equals(targetType)
-				&& checkSessionPermission(username, targetId, permission)) {
-			return true;
-		} else if (
-				"content".equals(targetType)
-				&& checkQuestionPermission(username, targetId, permission)
-				) {
-			return true;
-		} else if (
-				"comment".equals(targetType)
-				&& checkInterposedQuestionPermission(username, targetId, permission)
-				) {
-			return true;
+		final long start = System.nanoTime();
+		try {
+			final String username = getUsername(authentication);
+			if (checkAdminPermission(username)) {
+				return true;
+			} else if (
+					(PermissionDecisionCache.SESSION.equals(targetType)
+					|| PermissionDecisionCache.CONTENT.equals(targetType)
+					|| PermissionDecisionCache.COMMENT.equals(targetType))
+					&& checkPermission(username, targetType, targetId, permission)
+					) {
+				return true;
+			}
+			return false;
+		} finally {
+			permissionDecisionCache.recordCheck(System.nanoTime() - start);
 		}
-		return false;
 	}
 
 	private boolean checkAdminPermission(final String username) {
 		/* TODO: only allow accounts from arsnova db */
-		return Arrays.asList(adminAccounts).contains(username);
+		return adminAccountSet.contains(username);
 	}
 
-	private boolean checkSessionPermission(
+	/**
+	 * Returns the cached decision for the target or checks and caches it.
+	 */
+	private boolean checkPermission(
 			final String username,
+			final String targetType,
 			final Serializable targetId,
 			final Object permission
 			) {
-		if (permission instanceof String && ("owner".equals(permission) || "write".equals(permission))) {
-			return sessionRepository.getSessionFromKeyword(targetId.toString()).getCreator().equals(username);
-		} else if (permission instanceof String && "read".equals(permission)) {
-			return sessionRepository.getSessionFromKeyword(targetId.toString()).isActive();
+		if (username == null || targetId == null || !(permission instanceof String)) {
+			return false;
+		}
+		final String id = targetId.toString();
+		final Boolean cached = permissionDecisionCache.get(username, targetType, id, (String) permission);
+		if (cached != null) {
+			return cached;
+		}
+		final Decision decision;
+		switch (targetType) {
+			case PermissionDecisionCache.SESSION:
+				decision = checkSessionPermission(username, id, permission);
+				break;
+			case PermissionDecisionCache.CONTENT:
+				decision = checkQuestionPermission(username, id, permission);
+				break;
+			default:
+				decision = checkInterposedQuestionPermission(username, id, permission);
+				break;
 		}
-		return false;
+		permissionDecisionCache.put(username, targetType, id, (String) permission, decision.granted, decision.sessionKey);
+
+		return decision.granted;
 	}
 
-	private boolean checkQuestionPermission(
+	private Decision checkSessionPermission(
 			final String username,
-			final Serializable targetId,
+			final String targetId,
 			final Object permission
 			) {
-		if (permission instanceof String && "owner".equals(permission)) {
-			final Content content = contentRepository.getQuestion(targetId.toString());
+		if ("owner".equals(permission) || "write".equals(permission)) {
+			return new Decision(sessionRepository.getSessionFromKeyword(targetId).getCreator().equals(username), targetId);
+		} else if ("read".equals(permission)) {
+			return new Decision(sessionRepository.getSessionFromKeyword(targetId).isActive(), targetId);
+		}
+		return new Decision(false, targetId);
+	}
+
+	private Decision checkQuestionPermission(
+			final String username,
+			final String targetId,
+			final Object permission
+			) {
+		if ("owner".equals(permission)) {
+			final Content content = contentRepository.getQuestion(targetId);
 			if (content != null) {
 				final Session session = sessionRepository.getSessionFromId(content.getSessionId());
 
-				return session != null && session.getCreator().equals(username);
+				return session != null
+						? new Decision(session.getCreator().equals(username), session.getKeyword())
+						: new Decision(false, null);
 			}
 		}
-		return false;
+		return new Decision(false, null);
 	}
 
-	private boolean checkInterposedQuestionPermission(
+	private Decision checkInterposedQuestionPermission(
 			final String username,
-			final Serializable targetId,
+			final String targetId,
 			final Object permission
 			) {
-		if (permission instanceof String && "owner".equals(permission)) {
-			final Comment comment = commentRepository.getInterposedQuestion(targetId.toString());
+		if ("owner".equals(permission)) {
+			final Comment comment = commentRepository.getInterposedQuestion(targetId);
 			if (comment != null) {
 				// Does the creator want to delete his own comment?
 				if (comment.getCreator() != null && comment.getCreator().equals(username)) {
-					return true;
+					return new Decision(true, comment.getSessionId());
 				}
 				// Allow deletion if requested by session owner
 				final Session session = sessionRepository.getSessionFromKeyword(comment.getSessionId());
 
-				return session != null && session.getCreator().equals(username);
+				return session != null
+						? new Decision(session.getCreator().equals(username), session.getKeyword())
+						: new Decision(false, null);
 			}
 		}
-		return false;
+		return new Decision(false, null);
 	}
 
 	private String getUsername(final Authentication authentication) {
@@ -162,25 +218,27 @@ public class ApplicationPermissionEvaluator implements PermissionEvaluator {
 		}
 
 		if (authentication instanceof Pac4jAuthenticationToken) {
-			User user = null;
-
+			/* The usernames correspond to those set by the User constructors for the profiles. */
 			final Pac4jAuthenticationToken token = (Pac4jAuthenticationToken) authentication;
 			if (token.getProfile() instanceof Google2Profile) {
-				final Google2Profile profile = (Google2Profile) token.getProfile();
-				user = new User(profile);
+				return ((Google2Profile) token.getProfile()).getEmail();
 			} else if (token.getProfile() instanceof TwitterProfile) {
-				final TwitterProfile profile = (TwitterProfile) token.getProfile();
-				user = new User(profile);
+				return ((TwitterProfile) token.getProfile()).getUsername();
 			} else if (token.getProfile() instanceof FacebookProfile) {
-				final FacebookProfile profile = (FacebookProfile) token.getProfile();
-				user = new User(profile);
-			}
-
-			if (user != null) {
-				return user.getUsername();
+				return ((FacebookProfile) token.getProfile()).getProfileUrl().toString();
 			}
 		}
 
 		return authentication.getName();
 	}
+
+	private static class Decision {
+		private final boolean granted;
+		private final String sessionKey;
+
+		private Decision(final boolean granted, final String sessionKey) {
+			this.granted = granted;
+			this.sessionKey = sessionKey;
+		}
+	}
 }
@@ -0,0 +1,364 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.security;
+
+import com.codahale.metrics.annotation.Gauge;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import de.thm.arsnova.cache.CacheInvalidation;
+import de.thm.arsnova.cache.SharedCacheTier;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the decisions of {@link ApplicationPermissionEvaluator} per user, target and permission. Decisions are
+ * invalidated by the events which change the ownership or state of their target or its session. Changes which are not
+ * signaled by events, e.g., a change of a session's creator, have to be invalidated explicitly. As a safeguard,
+ * decisions expire after a short time.
+ *
+ * Since events are only published on the node where the change happened, invalidations are broadcast to the other
+ * nodes through the {@link SharedCacheTier}.
+ */
+@Component
+@MonitorGauges
+public class PermissionDecisionCache implements ApplicationListener<NovaEvent>, NovaEventVisitor {
+	public static final String SESSION = "session";
+	public static final String CONTENT = "content";
+	public static final String COMMENT = "comment";
+
+	private static final String CACHE_NAME = "permissions";
+	private static final String SESSION_SCOPE = "sessionScope";
+	private static final String KEY_SEPARATOR = ":";
+	private static final int MAXIMUM_SIZE = 10000;
+	private static final long EXPIRY_SECONDS = 60;
+
+	@Autowired(required = false)
+	private SharedCacheTier sharedTier;
+
+	private final String nodeId = UUID.randomUUID().toString();
+
+	private final Cache<Key, Decision> decisions = CacheBuilder.newBuilder()
+			.maximumSize(MAXIMUM_SIZE)
+			.expireAfterWrite(EXPIRY_SECONDS, TimeUnit.SECONDS)
+			.build();
+
+	private final AtomicLong checks = new AtomicLong();
+	private final AtomicLong checkTimeNs = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		if (sharedTier != null) {
+			sharedTier.subscribe(this::onInvalidation);
+		}
+	}
+
+	/**
+	 * Returns the cached decision or <code>null</code> if no decision is cached.
+	 */
+	public Boolean get(final String username, final String targetType, final String targetId, final String permission) {
+		final Decision decision = decisions.getIfPresent(new Key(username, targetType, targetId, permission));
+		if (decision == null) {
+			return null;
+		}
+		hits.incrementAndGet();
+
+		return decision.granted;
+	}
+
+	/**
+	 * Caches a decision. Decisions for contents and comments are only cached if the session is known, since they could
+	 * not be invalidated by changes of the session otherwise.
+	 *
+	 * @param sessionKey keyword of the session the target belongs to
+	 */
+	public void put(final String username, final String targetType, final String targetId, final String permission,
+			final boolean granted, final String sessionKey) {
+		if (sessionKey == null && !SESSION.equals(targetType)) {
+			return;
+		}
+		decisions.put(new Key(username, targetType, targetId, permission), new Decision(granted, sessionKey));
+	}
+
+	/**
+	 * Invalidates all decisions for targets belonging to the session on all nodes.
+	 */
+	public void invalidateSession(final String sessionKey) {
+		if (sessionKey == null) {
+			return;
+		}
+		invalidateSessionLocally(sessionKey);
+		broadcast(SESSION_SCOPE, sessionKey);
+	}
+
+	/**
+	 * Invalidates all decisions for the target on all nodes.
+	 */
+	public void invalidateTarget(final String targetType, final String targetId) {
+		if (targetId == null) {
+			return;
+		}
+		invalidateTargetLocally(targetType, targetId);
+		broadcast(targetType, targetId);
+	}
+
+	private void invalidateSessionLocally(final String sessionKey) {
+		for (final Map.Entry<Key, Decision> entry : decisions.asMap().entrySet()) {
+			if (sessionKey.equals(entry.getValue().sessionKey)) {
+				decisions.asMap().remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void invalidateTargetLocally(final String targetType, final String targetId) {
+		for (final Key key : decisions.asMap().keySet()) {
+			if (targetType.equals(key.targetType) && targetId.equals(key.targetId)) {
+				decisions.invalidate(key);
+			}
+		}
+	}
+
+	private void broadcast(final String scope, final String id) {
+		if (sharedTier != null) {
+			sharedTier.broadcast(new CacheInvalidation(nodeId, CACHE_NAME, scope + KEY_SEPARATOR + id));
+		}
+	}
+
+	private void onInvalidation(final CacheInvalidation invalidation) {
+		if (nodeId.equals(invalidation.getOrigin()) || !CACHE_NAME.equals(invalidation.getCacheName())) {
+			return;
+		}
+		if (invalidation.isClear()) {
+			decisions.invalidateAll();
+			return;
+		}
+		final String[] key = invalidation.getKey().toString().split(KEY_SEPARATOR, 2);
+		if (key.length < 2) {
+			return;
+		}
+		if (SESSION_SCOPE.equals(key[0])) {
+			invalidateSessionLocally(key[1]);
+		} else {
+			invalidateTargetLocally(key[0], key[1]);
+		}
+	}
+
+	/**
+	 * Records the duration of a permission check.
+	 */
+	public void recordCheck(final long durationNs) {
+		checks.incrementAndGet();
+		checkTimeNs.addAndGet(durationNs);
+	}
+
+	@Gauge
+	public long permissionChecks() {
+		return checks.get();
+	}
+
+	@Gauge
+	public long permissionCheckAverageTimeUs() {
+		final long count = checks.get();
+
+		return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(checkTimeNs.get() / count);
+	}
+
+	@Gauge
+	public long permissionDecisionCacheHits() {
+		return hits.get();
+	}
+
+	@Override
+	public void onApplicationEvent(final NovaEvent event) {
+		event.accept(this);
+	}
+
+	private void invalidateSession(final Session session) {
+		if (session != null) {
+			invalidateSession(session.getKeyword());
+		}
+	}
+
+	@Override
+	public void visit(NewCommentEvent event) { }
+
+	@Override
+	public void visit(DeleteCommentEvent event) {
+		if (event.getQuestion() != null) {
+			invalidateTarget(COMMENT, event.getQuestion().getId());
+		}
+	}
+
+	@Override
+	public void visit(NewQuestionEvent event) { }
+
+	@Override
+	public void visit(NewQuestionsEvent event) { }
+
+	@Override
+	public void visit(UnlockQuestionEvent event) { }
+
+	@Override
+	public void visit(UnlockQuestionsEvent event) { }
+
+	@Override
+	public void visit(LockQuestionEvent event) { }
+
+	@Override
+	public void visit(LockQuestionsEvent event) { }
+
+	@Override
+	public void visit(NewAnswerEvent event) { }
+
+	@Override
+	public void visit(DeleteAnswerEvent event) { }
+
+	@Override
+	public void visit(DeleteQuestionEvent event) {
+		if (event.getQuestion() != null) {
+			invalidateTarget(CONTENT, event.getQuestion().getId());
+		}
+	}
+
+	@Override
+	public void visit(DeleteAllQuestionsEvent event) {
+		invalidateSession(event.getSession());
+	}
+
+	@Override
+	public void visit(DeleteAllQuestionsAnswersEvent event) { }
+
+	@Override
+	public void visit(DeleteAllPreparationAnswersEvent event) { }
+
+	@Override
+	public void visit(DeleteAllLectureAnswersEvent event) { }
+
+	@Override
+	public void visit(NewFeedbackEvent event) { }
+
+	@Override
+	public void visit(DeleteFeedbackForSessionsEvent event) { }
+
+	@Override
+	public void visit(StatusSessionEvent event) {
+		invalidateSession(event.getSession());
+	}
+
+	@Override
+	public void visit(ChangeLearningProgressEvent event) { }
+
+	@Override
+	public void visit(PiRoundDelayedStartEvent event) { }
+
+	@Override
+	public void visit(PiRoundEndEvent event) { }
+
+	@Override
+	public void visit(PiRoundCancelEvent event) { }
+
+	@Override
+	public void visit(PiRoundResetEvent event) { }
+
+	@Override
+	public void visit(NewSessionEvent event) { }
+
+	@Override
+	public void visit(DeleteSessionEvent event) {
+		invalidateSession(event.getSession());
+	}
+
+	@Override
+	public void visit(LockVoteEvent event) { }
+
+	@Override
+	public void visit(LockVotesEvent event) { }
+
+	@Override
+	public void visit(UnlockVoteEvent event) { }
+
+	@Override
+	public void visit(UnlockVotesEvent event) { }
+
+	@Override
+	public void visit(FeatureChangeEvent event) { }
+
+	@Override
+	public void visit(LockFeedbackEvent event) { }
+
+	@Override
+	public void visit(FlipFlashcardsEvent event) { }
+
+	private static class Key {
+		private final String username;
+		private final String targetType;
+		private final String targetId;
+		private final String permission;
+
+		private Key(final String username, final String targetType, final String targetId, final String permission) {
+			this.username = username;
+			this.targetType = targetType;
+			this.targetId = targetId;
+			this.permission = permission;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) o;
+
+			return username.equals(other.username) && targetType.equals(other.targetType)
+					&& targetId.equals(other.targetId) && permission.equals(other.permission);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = username.hashCode();
+			result = 31 * result + targetType.hashCode();
+			result = 31 * result + targetId.hashCode();
+			result = 31 * result + permission.hashCode();
+
+			return result;
+		}
+	}
+
+	private static class Decision {
+		private final boolean granted;
+		private final String sessionKey;
+
+		private Decision(final boolean granted, final String sessionKey) {
+			this.granted = granted;
+			this.sessionKey = sessionKey;
+		}
+	}
+}
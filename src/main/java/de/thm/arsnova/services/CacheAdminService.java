@@ -0,0 +1,124 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.services;
+
+import de.thm.arsnova.cache.BoundedCacheManager;
+import de.thm.arsnova.cache.SessionContentCache;
+import de.thm.arsnova.cache.SessionRevisionTracker;
+import de.thm.arsnova.entities.CacheStatistics;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.exceptions.BadRequestException;
+import de.thm.arsnova.exceptions.NotFoundException;
+import de.thm.arsnova.persistance.SessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Allows administrators to manage the application's caches.
+ */
+@Service
+public class CacheAdminService implements ICacheAdminService {
+	private static final Logger logger = LoggerFactory.getLogger(CacheAdminService.class);
+
+	@Autowired
+	private BoundedCacheManager cacheManager;
+
+	@Autowired
+	private SessionContentCache sessionContentCache;
+
+	@Autowired
+	private SessionRevisionTracker sessionRevisionTracker;
+
+	@Autowired
+	private SessionRepository sessionRepository;
+
+	/**
+	 * Evicts all cache entries of the session from all caches: entries keyed by the session, its ID or keyword and
+	 * entries of the session's contents.
+	 *
+	 * @return the number of evicted entries
+	 */
+	@Override
+	@PreAuthorize("isAuthenticated() and hasPermission(1, 'motd', 'admin')")
+	public int evictSession(final String sessionkey) {
+		final Session session = sessionRepository.getSessionFromKeyword(sessionkey);
+		if (session == null) {
+			throw new NotFoundException();
+		}
+		sessionContentCache.evict(session.getId());
+		final int count = cacheManager.evictIf((key, value) -> belongsTo(key, session) || belongsTo(value, session));
+		sessionRevisionTracker.increment(session.getId(), SessionRevisionTracker.Scope.values());
+		logger.info("Evicted {} cache entries of session {}.", count, sessionkey);
+
+		return count;
+	}
+
+	/**
+	 * Returns the statistics of all caches including their largest and most frequently accessed keys.
+	 *
+	 * @param topKeys number of keys to report per cache and criterion
+	 */
+	@Override
+	@PreAuthorize("isAuthenticated() and hasPermission(1, 'motd', 'admin')")
+	public List<CacheStatistics> getStatistics(final int topKeys) {
+		if (topKeys < 0) {
+			throw new BadRequestException();
+		}
+
+		return cacheManager.getCacheStatistics(topKeys);
+	}
+
+	/**
+	 * Returns the hits and misses of the content lists of a single session in the <code>sessioncontents</code> cache.
+	 */
+	@Override
+	@PreAuthorize("isAuthenticated() and hasPermission(1, 'motd', 'admin')")
+	public CacheStatistics getSessionStatistics(final String sessionkey) {
+		final Session session = sessionRepository.getSessionFromKeyword(sessionkey);
+		if (session == null) {
+			throw new NotFoundException();
+		}
+		final CacheStatistics statistics = new CacheStatistics();
+		statistics.setName(SessionContentCache.CACHE_NAME);
+		statistics.setHits(sessionContentCache.getHitCount(session.getId()));
+		statistics.setMisses(sessionContentCache.getMissCount(session.getId()));
+
+		return statistics;
+	}
+
+	private static boolean belongsTo(final Object object, final Session session) {
+		if (object instanceof Session) {
+			final Session other = (Session) object;
+
+			return Objects.equals(session.getId(), other.getId()) || Objects.equals(session.getKeyword(), other.getKeyword());
+		} else if (object instanceof Content) {
+			return Objects.equals(session.getId(), ((Content) object).getSessionId());
+		} else if (object instanceof String) {
+			return object.equals(session.getId()) || object.equals(session.getKeyword());
+		}
+
+		return false;
+	}
+}
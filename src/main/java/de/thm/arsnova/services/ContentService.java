@@ -18,6 +18,7 @@
 package de.thm.arsnova.services;
 
 import de.thm.arsnova.ImageUtils;
+import de.thm.arsnova.cache.SessionRevisionTracker;
 import de.thm.arsnova.entities.Answer;
 import de.thm.arsnova.entities.Comment;
 import de.thm.arsnova.entities.CommentReadingCount;
@@ -42,13 +43,12 @@ import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Performs all question, comment, and answer related operations.
@@ -80,7 +80,31 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 
 	private static final Logger logger = LoggerFactory.getLogger(ContentService.class);
 
-	private HashMap<String, Timer> timerList = new HashMap<>();
+	@Autowired
+	private PiRoundScheduler piRoundScheduler;
+
+	@Autowired
+	private SessionRevisionTracker sessionRevisionTracker;
+
+	@Autowired
+	private ISessionCounterService sessionCounterService;
+
+	/**
+	 * Resumes the delayed pi round ends which were pending when the application was shut down. Rounds whose end time
+	 * has passed in the meantime are ended immediately.
+	 */
+	@PostConstruct
+	public void resumePiRoundTransitions() {
+		try {
+			final Map<String, Long> endTimes = contentRepository.getPendingPiRoundEndTimes();
+			for (final Map.Entry<String, Long> entry : endTimes.entrySet()) {
+				schedulePiRoundEnd(entry.getKey(), entry.getValue());
+			}
+			logger.info("Resumed {} pending pi round transitions.", endTimes.size());
+		} catch (final RuntimeException e) {
+			logger.error("Could not resume pending pi round transitions.", e);
+		}
+	}
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
@@ -97,8 +121,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	@Override
 	@PreAuthorize("isAuthenticated()")
 	public int getSkillQuestionCount(final String sessionkey) {
-		final Session session = sessionRepository.getSessionFromKeyword(sessionkey);
-		return contentRepository.getSkillQuestionCount(session);
+		return sessionCounterService.getContentCount(getSession(sessionkey));
 	}
 
 	/* FIXME: #content.getSessionKeyword() cannot be checked since keyword is no longer set for content. */
@@ -106,6 +129,46 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	@PreAuthorize("isAuthenticated() and hasPermission(#content.getSessionKeyword(), 'session', 'owner')")
 	public Content saveQuestion(final Content content) {
 		final Session session = sessionRepository.getSessionFromKeyword(content.getSessionKeyword());
+		prepareQuestion(session, content);
+
+		final Content result = contentRepository.saveQuestion(session, content);
+
+		final NewQuestionEvent event = new NewQuestionEvent(this, session, result);
+		this.publisher.publishEvent(event);
+
+		return result;
+	}
+
+	/**
+	 * Saves multiple contents of a single session. All contents are validated before any of them is stored. They are
+	 * stored with a single bulk request and a single {@link NewQuestionsEvent} is sent for all of them.
+	 */
+	@Override
+	@PreAuthorize("isAuthenticated()")
+	public List<Content> saveQuestions(final List<Content> contents) {
+		if (contents.isEmpty()) {
+			return contents;
+		}
+		final String sessionKeyword = contents.get(0).getSessionKeyword();
+		for (final Content content : contents) {
+			if (sessionKeyword == null || !sessionKeyword.equals(content.getSessionKeyword())) {
+				throw new BadRequestException();
+			}
+		}
+		final Session session = getSessionWithAuthCheck(sessionKeyword);
+		for (final Content content : contents) {
+			prepareQuestion(session, content);
+		}
+
+		final List<Content> result = contentRepository.saveQuestions(session, contents);
+		if (!result.isEmpty()) {
+			this.publisher.publishEvent(new NewQuestionsEvent(this, session, result));
+		}
+
+		return result;
+	}
+
+	private void prepareQuestion(final Session session, final Content content) {
 		content.setSessionId(session.getId());
 		content.setTimestamp(System.currentTimeMillis() / 1000L);
 
@@ -124,13 +187,6 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 				throw new BadRequestException();
 			}
 		}
-
-		final Content result = contentRepository.saveQuestion(session, content);
-
-		final NewQuestionEvent event = new NewQuestionEvent(this, session, result);
-		this.publisher.publishEvent(event);
-
-		return result;
 	}
 
 	@Override
@@ -202,9 +258,8 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 
 		cancelDelayedPiRoundChange(questionId);
 
-		content.setPiRoundEndTime(0);
 		content.setVotingDisabled(true);
-		content.updateRoundManagementState();
+		content.endPiRound();
 		update(content, user);
 
 		this.publisher.publishEvent(new PiRoundEndEvent(this, session, content));
@@ -213,26 +268,44 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	@Override
 	@PreAuthorize("isAuthenticated() and hasPermission(#questionId, 'content', 'owner')")
 	public void startNewPiRoundDelayed(final String questionId, final int time) {
-		final IContentService contentService = this;
-		final User user = userService.getCurrentUser();
 		final Content content = contentRepository.getQuestion(questionId);
 		final Session session = sessionRepository.getSessionFromId(content.getSessionId());
 
 		final Date date = new Date();
-		final Timer timer = new Timer();
 		final Date endDate = new Date(date.getTime() + (time * 1000));
 		content.updateRoundStartVariables(date, endDate);
 		update(content);
 
 		this.publisher.publishEvent(new PiRoundDelayedStartEvent(this, session, content));
-		timerList.put(questionId, timer);
+		schedulePiRoundEnd(questionId, endDate.getTime());
+	}
 
-		timer.schedule(new TimerTask() {
+	private void schedulePiRoundEnd(final String questionId, final long endTime) {
+		piRoundScheduler.schedule(questionId, endTime, new Runnable() {
 			@Override
 			public void run() {
-				contentService.startNewPiRound(questionId, user);
+				endDelayedPiRound(questionId);
 			}
-		}, endDate);
+		});
+	}
+
+	/**
+	 * Ends a pi round once its end time has been reached. In contrast to {@link #startNewPiRound(String, User)} no user
+	 * is required since the round end has already been authorized when the round was started. The new state is only
+	 * persisted and published if the round is still active, so each round end is handled once.
+	 */
+	private void endDelayedPiRound(final String questionId) {
+		final Content content = contentRepository.getQuestion(questionId);
+		if (null == content || !content.isPiRoundActive()) {
+			return;
+		}
+		final Session session = sessionRepository.getSessionFromId(content.getSessionId());
+
+		content.setVotingDisabled(true);
+		content.endPiRound();
+		contentRepository.updateQuestion(content);
+
+		this.publisher.publishEvent(new PiRoundEndEvent(this, session, content));
 	}
 
 	@Override
@@ -257,13 +330,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 
 	@Override
 	public void cancelDelayedPiRoundChange(final String questionId) {
-		Timer timer = timerList.get(questionId);
-
-		if (null != timer) {
-			timer.cancel();
-			timerList.remove(questionId);
-			timer.purge();
-		}
+		piRoundScheduler.cancel(questionId);
 	}
 
 	@Override
@@ -379,6 +446,8 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 		} else {
 			commentRepository.deleteAllInterposedQuestions(session, user);
 		}
+		sessionCounterService.invalidate(session);
+		sessionRevisionTracker.increment(session.getId(), SessionRevisionTracker.Scope.COMMENTS);
 	}
 
 	@Override
@@ -388,6 +457,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 		content.resetQuestionState();
 		contentRepository.updateQuestion(content);
 		answerRepository.deleteAnswers(content);
+		sessionCounterService.invalidate(sessionRepository.getSessionFromId(content.getSessionId()));
 	}
 
 	@Override
@@ -578,7 +648,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	@Override
 	@PreAuthorize("isAuthenticated()")
 	public int getInterposedCount(final String sessionKey) {
-		return commentRepository.getInterposedCount(sessionKey);
+		return sessionCounterService.getCommentCount(getSession(sessionKey));
 	}
 
 	@Override
@@ -589,7 +659,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 			throw new NotFoundException();
 		}
 		if (username == null) {
-			return commentRepository.getInterposedReadingCount(session);
+			return sessionCounterService.getCommentReadingCount(session);
 		} else {
 			User currentUser = userService.getCurrentUser();
 			if (!currentUser.getUsername().equals(username)) {
@@ -634,7 +704,11 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 			throw new UnauthorizedException();
 		}
 		if (session.isCreator(user)) {
+			if (!comment.isRead()) {
+				sessionCounterService.markCommentRead(session);
+			}
 			commentRepository.markInterposedQuestionAsRead(comment);
+			sessionRevisionTracker.increment(session.getId(), SessionRevisionTracker.Scope.COMMENTS);
 		}
 		return comment;
 	}
@@ -665,7 +739,18 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 			content.setPiRound(oldContent.getPiRound() > 0 ? oldContent.getPiRound() : 1);
 		}
 
+		/* A stale copy of the content might still contain a pi round which has already been ended. */
+		if (content.isPiRoundActive() && content.getPiRoundEndTime() <= System.currentTimeMillis()) {
+			content.endPiRound();
+		}
+
 		final Content result = contentRepository.updateQuestion(content);
+		if (result != null && result.isPiRoundActive() && !piRoundScheduler.isPending(result.getId())) {
+			schedulePiRoundEnd(result.getId(), result.getPiRoundEndTime());
+		}
+		if (oldContent.getQuestionVariant() != null && !oldContent.getQuestionVariant().equals(content.getQuestionVariant())) {
+			sessionCounterService.invalidate(session);
+		}
 
 		if (!oldContent.isActive() && content.isActive()) {
 			final UnlockQuestionEvent event = new UnlockQuestionEvent(this, session, result);
@@ -807,19 +892,19 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	@Override
 	@PreAuthorize("isAuthenticated()")
 	public int getLectureQuestionCount(final String sessionkey) {
-		return contentRepository.getLectureQuestionCount(getSession(sessionkey));
+		return sessionCounterService.getContentCount(getSession(sessionkey), "lecture");
 	}
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
 	public int getFlashcardCount(final String sessionkey) {
-		return contentRepository.getFlashcardCount(getSession(sessionkey));
+		return sessionCounterService.getContentCount(getSession(sessionkey), "flashcard");
 	}
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
 	public int getPreparationQuestionCount(final String sessionkey) {
-		return contentRepository.getPreparationQuestionCount(getSession(sessionkey));
+		return sessionCounterService.getContentCount(getSession(sessionkey), "preparation");
 	}
 
 	@Override
@@ -834,7 +919,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	 */
 	@Override
 	public int countLectureQuestionAnswersInternal(final String sessionkey) {
-		return answerRepository.countLectureQuestionAnswers(getSession(sessionkey));
+		return sessionCounterService.getAnswerCount(getSession(sessionkey), "lecture");
 	}
 
 	@Override
@@ -865,7 +950,7 @@ public class ContentService implements IContentService, ApplicationEventPublishe
 	 */
 	@Override
 	public int countPreparationQuestionAnswersInternal(final String sessionkey) {
-		return answerRepository.countPreparationQuestionAnswers(getSession(sessionkey));
+		return sessionCounterService.getAnswerCount(getSession(sessionkey), "preparation");
 	}
 
 	/*
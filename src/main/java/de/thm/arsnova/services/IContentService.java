@@ -32,6 +32,8 @@ import java.util.Map;
 public interface IContentService {
 	Content saveQuestion(Content content);
 
+	List<Content> saveQuestions(List<Content> contents);
+
 	boolean saveQuestion(Comment comment);
 
 	Content getQuestion(String id);
@@ -0,0 +1,46 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.services;
+
+import de.thm.arsnova.entities.CommentReadingCount;
+import de.thm.arsnova.entities.Session;
+
+/**
+ * Provides the content, answer and comment counts of sessions without querying the database for every request.
+ */
+public interface ISessionCounterService {
+	int getContentCount(Session session);
+
+	int getContentCount(Session session, String variant);
+
+	int getAnswerCount(Session session, String variant);
+
+	int getCommentCount(Session session);
+
+	CommentReadingCount getCommentReadingCount(Session session);
+
+	void markCommentRead(Session session);
+
+	/**
+	 * Checks whether the counts of the session are kept in memory and up to date, so reading them does not query the
+	 * database.
+	 */
+	boolean isLoaded(Session session);
+
+	void invalidate(Session session);
+}
@@ -44,13 +44,13 @@ public interface ISessionService {
 
 	String generateKeyword();
 
-	List<Session> getUserSessions(String username);
+	List<Session> getUserSessions(String username, String sortby);
 
-	List<Session> getUserVisitedSessions(String username);
+	List<Session> getUserVisitedSessions(String username, String sortby);
 
-	List<Session> getMySessions(int offset, int limit);
+	List<Session> getMySessions(int offset, int limit, String sortby, String cursor);
 
-	List<Session> getMyVisitedSessions(int offset, int limit);
+	List<Session> getMyVisitedSessions(int offset, int limit, String sortby);
 
 	int countSessions(List<Course> courses);
 
@@ -72,13 +72,13 @@ public interface ISessionService {
 
 	LearningProgressValues getMyLearningProgress(String sessionkey, String progressType, String questionVariant);
 
-	List<SessionInfo> getMySessionsInfo(int offset, int limit);
+	List<SessionInfo> getMySessionsInfo(int offset, int limit, String sortby, String cursor);
 
 	List<SessionInfo> getPublicPoolSessionsInfo();
 
 	List<SessionInfo> getMyPublicPoolSessionsInfo();
 
-	List<SessionInfo> getMyVisitedSessionsInfo(int offset, int limit);
+	List<SessionInfo> getMyVisitedSessionsInfo(int offset, int limit, String sortby);
 
 	SessionInfo importSession(ImportExportSession session);
 
@@ -0,0 +1,142 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.services;
+
+import com.codahale.metrics.annotation.Gauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the delayed ends of pi rounds on a single shared thread. At most one transition is pending per question.
+ */
+@Component
+@MonitorGauges
+public class PiRoundScheduler {
+	/* Transitions which have not been executed this long after their deadline are reported as overdue. */
+	private static final long OVERDUE_TOLERANCE_MS = 5000;
+
+	private static final Logger logger = LoggerFactory.getLogger(PiRoundScheduler.class);
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "pi-round-scheduler");
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	});
+
+	private final Map<String, Transition> transitions = new ConcurrentHashMap<>();
+
+	/**
+	 * Schedules the task to be executed at the deadline. A transition which is already pending for the question is
+	 * cancelled. Tasks with a deadline in the past are executed immediately.
+	 *
+	 * @param questionId ID of the question whose pi round ends
+	 * @param deadline end time in milliseconds since the epoch
+	 * @param task the transition to execute
+	 */
+	public synchronized void schedule(final String questionId, final long deadline, final Runnable task) {
+		final Transition transition = new Transition(deadline);
+		final Transition previous = transitions.remove(questionId);
+		if (previous != null) {
+			previous.future.cancel(false);
+		}
+		final long delay = Math.max(0, deadline - System.currentTimeMillis());
+		transition.future = executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (final RuntimeException e) {
+					logger.error("Pi round transition for question {} failed.", questionId, e);
+				} finally {
+					synchronized (PiRoundScheduler.this) {
+						transitions.remove(questionId, transition);
+					}
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+		transitions.put(questionId, transition);
+		logger.debug("Scheduled pi round transition for question {} in {} ms.", questionId, delay);
+	}
+
+	/**
+	 * Cancels the pending transition for the question.
+	 *
+	 * @return <code>true</code> if a transition was pending
+	 */
+	public synchronized boolean cancel(final String questionId) {
+		final Transition transition = transitions.remove(questionId);
+		if (transition == null) {
+			return false;
+		}
+		transition.future.cancel(false);
+
+		return true;
+	}
+
+	public boolean isPending(final String questionId) {
+		return transitions.containsKey(questionId);
+	}
+
+	@Gauge
+	public int pendingPiRoundTransitions() {
+		return transitions.size();
+	}
+
+	@Gauge
+	public int overduePiRoundTransitions() {
+		final long threshold = System.currentTimeMillis() - OVERDUE_TOLERANCE_MS;
+		int count = 0;
+		for (final Transition transition : transitions.values()) {
+			if (transition.deadline < threshold) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	@PreDestroy
+	public void destroy() {
+		logger.info("Shutting down pi round scheduler with {} pending transitions.", transitions.size());
+		executor.shutdownNow();
+	}
+
+	private static class Transition {
+		private final long deadline;
+		private ScheduledFuture<?> future;
+
+		private Transition(final long deadline) {
+			this.deadline = deadline;
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.services;
+
+import de.thm.arsnova.entities.CommentReadingCount;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.*;
+import de.thm.arsnova.persistance.AnswerRepository;
+import de.thm.arsnova.persistance.CommentRepository;
+import de.thm.arsnova.persistance.ContentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the counts of a session once and keeps them up to date based on ARSnova's events. Since not every change is
+ * published as an event, the counts of recently used sessions are periodically reconciled with the database views.
+ * Counts of sessions which have not been read for a while are dropped.
+ */
+/* Counts need to be updated before other listeners, e.g., the socket server, read them. */
+@Service
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SessionCounterService implements ISessionCounterService, ApplicationListener<NovaEvent>, NovaEventVisitor {
+	private static final long RECONCILIATION_INTERVAL_MS = 5 * 60 * 1000L;
+	private static final long IDLE_TIMEOUT_MS = 30 * 60 * 1000L;
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionCounterService.class);
+
+	@Autowired
+	private ContentRepository contentRepository;
+
+	@Autowired
+	private AnswerRepository answerRepository;
+
+	@Autowired
+	private CommentRepository commentRepository;
+
+	private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+	@Override
+	public int getContentCount(final Session session) {
+		return getCounters(session).contents.get();
+	}
+
+	@Override
+	public int getContentCount(final Session session, final String variant) {
+		final Counters c = getCounters(session);
+		switch (variant) {
+			case "lecture":
+				return c.lectureContents.get();
+			case "preparation":
+				return c.preparationContents.get();
+			case "flashcard":
+				return c.flashcards.get();
+			default:
+				throw new IllegalArgumentException("Unsupported content variant: " + variant);
+		}
+	}
+
+	@Override
+	public int getAnswerCount(final Session session, final String variant) {
+		final Counters c = getCounters(session);
+		switch (variant) {
+			case "lecture":
+				return c.lectureAnswers.get();
+			case "preparation":
+				return c.preparationAnswers.get();
+			default:
+				throw new IllegalArgumentException("Unsupported content variant: " + variant);
+		}
+	}
+
+	@Override
+	public int getCommentCount(final Session session) {
+		final Counters c = getCounters(session);
+
+		return c.readComments.get() + c.unreadComments.get();
+	}
+
+	@Override
+	public CommentReadingCount getCommentReadingCount(final Session session) {
+		final Counters c = getCounters(session);
+
+		return new CommentReadingCount(c.readComments.get(), c.unreadComments.get());
+	}
+
+	@Override
+	public void markCommentRead(final Session session) {
+		final Counters c = getLoadedCounters(session);
+		if (c != null) {
+			c.readComments.incrementAndGet();
+			c.unreadComments.decrementAndGet();
+		}
+	}
+
+	@Override
+	public boolean isLoaded(final Session session) {
+		final Counters c = counters.get(session.getId());
+
+		return c != null && c.loaded && !c.stale;
+	}
+
+	/**
+	 * Marks the counts of the session as outdated for changes which are not covered by events. They are reloaded on the
+	 * next read.
+	 */
+	@Override
+	public void invalidate(final Session session) {
+		final Counters c = counters.get(session.getId());
+		if (c != null) {
+			c.stale = true;
+		}
+	}
+
+	@Scheduled(initialDelay = RECONCILIATION_INTERVAL_MS, fixedDelay = RECONCILIATION_INTERVAL_MS)
+	public void reconcileCounters() {
+		final long idleThreshold = System.currentTimeMillis() - IDLE_TIMEOUT_MS;
+		int reconciled = 0;
+		final Iterator<Counters> it = counters.values().iterator();
+		while (it.hasNext()) {
+			final Counters c = it.next();
+			if (c.lastAccess < idleThreshold) {
+				it.remove();
+				continue;
+			}
+			try {
+				synchronized (c) {
+					load(c);
+				}
+				reconciled++;
+			} catch (final RuntimeException e) {
+				logger.error("Could not reconcile counters of session {}.", c.session.getKeyword(), e);
+			}
+		}
+		logger.debug("Reconciled counters of {} sessions.", reconciled);
+	}
+
+	@Override
+	public void onApplicationEvent(final NovaEvent event) {
+		event.accept(this);
+	}
+
+	/**
+	 * Returns the counters of the session and loads them if necessary. Concurrent readers of the same session wait for a
+	 * single load instead of querying the views themselves.
+	 */
+	private Counters getCounters(final Session session) {
+		final Counters c = counters.computeIfAbsent(session.getId(), id -> new Counters(session));
+		if (!c.loaded || c.stale) {
+			synchronized (c) {
+				if (!c.loaded || c.stale) {
+					load(c);
+				}
+			}
+		}
+		c.lastAccess = System.currentTimeMillis();
+
+		return c;
+	}
+
+	/* Changes which are applied while the counts are loaded might get lost. They are fixed by the next reconciliation. */
+	private void load(final Counters c) {
+		c.stale = false;
+		try {
+			c.contents.set(contentRepository.getSkillQuestionCount(c.session));
+			c.lectureContents.set(contentRepository.getLectureQuestionCount(c.session));
+			c.preparationContents.set(contentRepository.getPreparationQuestionCount(c.session));
+			c.flashcards.set(contentRepository.getFlashcardCount(c.session));
+			c.lectureAnswers.set(answerRepository.countLectureQuestionAnswers(c.session));
+			c.preparationAnswers.set(answerRepository.countPreparationQuestionAnswers(c.session));
+			final CommentReadingCount comments = commentRepository.getInterposedReadingCount(c.session);
+			c.readComments.set(comments.getRead());
+			c.unreadComments.set(comments.getUnread());
+			c.loaded = true;
+		} catch (final RuntimeException e) {
+			/* Partially loaded counts have to be reloaded by the next read. */
+			c.stale = true;
+			throw e;
+		}
+	}
+
+	private Counters getLoadedCounters(final Session session) {
+		final Counters c = session == null ? null : counters.get(session.getId());
+
+		return c != null && c.loaded ? c : null;
+	}
+
+	private void addContent(final Session session, final Content content, final int delta) {
+		final Counters c = getLoadedCounters(session);
+		if (c == null) {
+			return;
+		}
+		c.contents.addAndGet(delta);
+		final AtomicInteger variantCounter = c.getContentCounter(content.getQuestionVariant());
+		if (variantCounter != null) {
+			variantCounter.addAndGet(delta);
+		}
+	}
+
+	private void addAnswer(final Session session, final Content content, final int delta) {
+		final Counters c = getLoadedCounters(session);
+		if (c == null) {
+			return;
+		}
+		final AtomicInteger variantCounter = c.getAnswerCounter(content.getQuestionVariant());
+		if (variantCounter != null) {
+			variantCounter.addAndGet(delta);
+		}
+	}
+
+	private void markStale(final Session session) {
+		final Counters c = getLoadedCounters(session);
+		if (c != null) {
+			c.stale = true;
+		}
+	}
+
+	@Override
+	public void visit(NewCommentEvent event) {
+		final Counters c = getLoadedCounters(event.getSession());
+		if (c != null) {
+			c.unreadComments.incrementAndGet();
+		}
+	}
+
+	@Override
+	public void visit(DeleteCommentEvent event) {
+		final Counters c = getLoadedCounters(event.getSession());
+		if (c != null) {
+			(event.getQuestion().isRead() ? c.readComments : c.unreadComments).decrementAndGet();
+		}
+	}
+
+	@Override
+	public void visit(NewQuestionEvent event) {
+		addContent(event.getSession(), event.getQuestion(), 1);
+	}
+
+	@Override
+	public void visit(NewQuestionsEvent event) {
+		for (final Content content : event.getQuestions()) {
+			addContent(event.getSession(), content, 1);
+		}
+	}
+
+	@Override
+	public void visit(UnlockQuestionEvent event) { }
+
+	@Override
+	public void visit(UnlockQuestionsEvent event) { }
+
+	@Override
+	public void visit(LockQuestionEvent event) { }
+
+	@Override
+	public void visit(LockQuestionsEvent event) { }
+
+	@Override
+	public void visit(NewAnswerEvent event) {
+		/* Updates of existing answers are published by the content service with the same event type. */
+		if (event.getSource() instanceof AnswerRepository) {
+			addAnswer(event.getSession(), event.getContent(), 1);
+		}
+	}
+
+	@Override
+	public void visit(DeleteAnswerEvent event) {
+		addAnswer(event.getSession(), event.getQuestion(), -1);
+	}
+
+	@Override
+	public void visit(DeleteQuestionEvent event) {
+		/* The number of deleted answers is unknown */
+		markStale(event.getSession());
+	}
+
+	@Override
+	public void visit(DeleteAllQuestionsEvent event) {
+		markStale(event.getSession());
+	}
+
+	@Override
+	public void visit(DeleteAllQuestionsAnswersEvent event) {
+		final Counters c = getLoadedCounters(event.getSession());
+		if (c != null) {
+			c.lectureAnswers.set(0);
+			c.preparationAnswers.set(0);
+		}
+	}
+
+	@Override
+	public void visit(DeleteAllPreparationAnswersEvent event) {
+		final Counters c = getLoadedCounters(event.getSession());
+		if (c != null) {
+			c.preparationAnswers.set(0);
+		}
+	}
+
+	@Override
+	public void visit(DeleteAllLectureAnswersEvent event) {
+		final Counters c = getLoadedCounters(event.getSession());
+		if (c != null) {
+			c.lectureAnswers.set(0);
+		}
+	}
+
+	@Override
+	public void visit(NewFeedbackEvent event) { }
+
+	@Override
+	public void visit(DeleteFeedbackForSessionsEvent event) { }
+
+	@Override
+	public void visit(StatusSessionEvent event) { }
+
+	@Override
+	public void visit(ChangeLearningProgressEvent event) { }
+
+	@Override
+	public void visit(PiRoundDelayedStartEvent event) { }
+
+	@Override
+	public void visit(PiRoundEndEvent event) { }
+
+	@Override
+	public void visit(PiRoundCancelEvent event) { }
+
+	@Override
+	public void visit(PiRoundResetEvent event) {
+		/* The answers of the content have been deleted */
+		markStale(event.getSession());
+	}
+
+	@Override
+	public void visit(NewSessionEvent event) { }
+
+	@Override
+	public void visit(DeleteSessionEvent event) {
+		if (event.getSession() != null) {
+			counters.remove(event.getSession().getId());
+		}
+	}
+
+	@Override
+	public void visit(LockVoteEvent event) { }
+
+	@Override
+	public void visit(LockVotesEvent event) { }
+
+	@Override
+	public void visit(UnlockVoteEvent event) { }
+
+	@Override
+	public void visit(UnlockVotesEvent event) { }
+
+	@Override
+	public void visit(FeatureChangeEvent event) { }
+
+	@Override
+	public void visit(LockFeedbackEvent event) { }
+
+	@Override
+	public void visit(FlipFlashcardsEvent event) { }
+
+	private static class Counters {
+		private final Session session;
+		private final AtomicInteger contents = new AtomicInteger();
+		private final AtomicInteger lectureContents = new AtomicInteger();
+		private final AtomicInteger preparationContents = new AtomicInteger();
+		private final AtomicInteger flashcards = new AtomicInteger();
+		private final AtomicInteger lectureAnswers = new AtomicInteger();
+		private final AtomicInteger preparationAnswers = new AtomicInteger();
+		private final AtomicInteger readComments = new AtomicInteger();
+		private final AtomicInteger unreadComments = new AtomicInteger();
+		private volatile boolean loaded;
+		private volatile boolean stale;
+		private volatile long lastAccess = System.currentTimeMillis();
+
+		private Counters(final Session session) {
+			this.session = session;
+		}
+
+		private AtomicInteger getContentCounter(final String variant) {
+			if ("lecture".equals(variant)) {
+				return lectureContents;
+			} else if ("preparation".equals(variant)) {
+				return preparationContents;
+			} else if ("flashcard".equals(variant)) {
+				return flashcards;
+			}
+			return null;
+		}
+
+		private AtomicInteger getAnswerCounter(final String variant) {
+			if ("lecture".equals(variant)) {
+				return lectureAnswers;
+			} else if ("preparation".equals(variant)) {
+				return preparationAnswers;
+			}
+			return null;
+		}
+	}
+}
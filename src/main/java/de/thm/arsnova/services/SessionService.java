@@ -42,6 +42,7 @@ import de.thm.arsnova.exceptions.PayloadTooLargeException;
 import de.thm.arsnova.exceptions.UnauthorizedException;
 import de.thm.arsnova.persistance.SessionRepository;
 import de.thm.arsnova.persistance.VisitedSessionRepository;
+import de.thm.arsnova.security.PermissionDecisionCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -52,8 +53,6 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
-import java.io.Serializable;
-import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
 
@@ -66,42 +65,6 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 	@Autowired
 	private SessionRepository sessionRepository;
 
-	public static class SessionNameComparator implements Comparator<Session>, Serializable {
-		private static final long serialVersionUID = 1L;
-
-		@Override
-		public int compare(final Session session1, final Session session2) {
-			return session1.getName().compareToIgnoreCase(session2.getName());
-		}
-	}
-
-	public static class SessionInfoNameComparator implements Comparator<SessionInfo>, Serializable {
-		private static final long serialVersionUID = 1L;
-
-		@Override
-		public int compare(final SessionInfo session1, final SessionInfo session2) {
-			return session1.getName().compareToIgnoreCase(session2.getName());
-		}
-	}
-
-	public static class SessionShortNameComparator implements Comparator<Session>, Serializable {
-		private static final long serialVersionUID = 1L;
-
-		@Override
-		public int compare(final Session session1, final Session session2) {
-			return session1.getShortName().compareToIgnoreCase(session2.getShortName());
-		}
-	}
-
-	public static class SessionInfoShortNameComparator implements Comparator<SessionInfo>, Serializable {
-		private static final long serialVersionUID = 1L;
-
-		@Override
-		public int compare(final SessionInfo session1, final SessionInfo session2) {
-			return session1.getShortName().compareToIgnoreCase(session2.getShortName());
-		}
-	}
-
 	private static final long SESSION_INACTIVITY_CHECK_INTERVAL_MS = 30 * 60 * 1000L;
 
 	@Autowired
@@ -119,6 +82,12 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 	@Autowired(required = false)
 	private ConnectorClient connectorClient;
 
+	@Autowired
+	private SessionWarmUp sessionWarmUp;
+
+	@Autowired
+	private PermissionDecisionCache permissionDecisionCache;
+
 	@Autowired
 	private ImageUtils imageUtils;
 
@@ -168,6 +137,8 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 
 		if (session.getCreator().equals(user.getUsername())) {
 			sessionRepository.updateSessionOwnerActivity(session);
+			/* Students usually follow the lecturer shortly. */
+			sessionWarmUp.warmUp(session);
 		}
 		sessionRepository.registerAsOnlineUser(user, session);
 
@@ -221,14 +192,14 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 
 	@Override
 	@PreAuthorize("isAuthenticated() and hasPermission(#sessionkey, 'session', 'owner')")
-	public List<Session> getUserSessions(String username) {
-		return sessionRepository.getSessionsForUsername(username, 0, 0);
+	public List<Session> getUserSessions(String username, final String sortby) {
+		return sessionRepository.getSessionsForUsername(username, 0, 0, sortby, null);
 	}
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
-	public List<Session> getMySessions(final int offset, final int limit) {
-		return sessionRepository.getMySessions(userService.getCurrentUser(), offset, limit);
+	public List<Session> getMySessions(final int offset, final int limit, final String sortby, final String cursor) {
+		return sessionRepository.getMySessions(userService.getCurrentUser(), offset, limit, sortby, cursor);
 	}
 
 	@Override
@@ -245,27 +216,28 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
-	public List<SessionInfo> getMySessionsInfo(final int offset, final int limit) {
+	public List<SessionInfo> getMySessionsInfo(final int offset, final int limit, final String sortby,
+			final String cursor) {
 		final User user = userService.getCurrentUser();
-		return sessionRepository.getMySessionsInfo(user, offset, limit);
+		return sessionRepository.getMySessionsInfo(user, offset, limit, sortby, cursor);
 	}
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
-	public List<Session> getMyVisitedSessions(final int offset, final int limit) {
-		return sessionRepository.getVisitedSessionsForUsername(userService.getCurrentUser().getUsername(), offset, limit);
+	public List<Session> getMyVisitedSessions(final int offset, final int limit, final String sortby) {
+		return sessionRepository.getVisitedSessionsForUsername(userService.getCurrentUser().getUsername(), offset, limit, sortby);
 	}
 
 	@Override
 	@PreAuthorize("isAuthenticated() and hasPermission(1, 'motd', 'admin')")
-	public List<Session> getUserVisitedSessions(String username) {
-		return sessionRepository.getVisitedSessionsForUsername(username, 0, 0);
+	public List<Session> getUserVisitedSessions(String username, final String sortby) {
+		return sessionRepository.getVisitedSessionsForUsername(username, 0, 0, sortby);
 	}
 
 	@Override
 	@PreAuthorize("isAuthenticated()")
-	public List<SessionInfo> getMyVisitedSessionsInfo(final int offset, final int limit) {
-		return sessionRepository.getMyVisitedSessionsInfo(userService.getCurrentUser(), offset, limit);
+	public List<SessionInfo> getMyVisitedSessionsInfo(final int offset, final int limit, final String sortby) {
+		return sessionRepository.getMyVisitedSessionsInfo(userService.getCurrentUser(), offset, limit, sortby);
 	}
 
 	@Override
@@ -340,7 +312,12 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 		}
 		session.setActive(lock);
 		this.publisher.publishEvent(new StatusSessionEvent(this, session));
-		return sessionRepository.updateSession(session);
+		final Session result = sessionRepository.updateSession(session);
+		if (Boolean.TRUE.equals(lock)) {
+			sessionWarmUp.warmUp(session);
+		}
+
+		return result;
 	}
 
 	@Override
@@ -365,8 +342,11 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 
 		handleLogo(session);
 		existingSession.setPpLogo(session.getPpLogo());
+		final Session result = sessionRepository.updateSession(existingSession);
+		/* The session's active state might have changed. */
+		permissionDecisionCache.invalidateSession(sessionkey);
 
-		return sessionRepository.updateSession(existingSession);
+		return result;
 	}
 
 	@Override
@@ -376,7 +356,10 @@ public class SessionService implements ISessionService, ApplicationEventPublishe
 		if (existingSession == null) {
 			throw new NullPointerException("Could not load session " + sessionkey + ".");
 		}
-		return sessionRepository.changeSessionCreator(existingSession, newCreator);
+		final Session result = sessionRepository.changeSessionCreator(existingSession, newCreator);
+		permissionDecisionCache.invalidateSession(sessionkey);
+
+		return result;
 	}
 
 	/*
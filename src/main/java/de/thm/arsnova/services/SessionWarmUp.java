@@ -0,0 +1,172 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.services;
+
+import com.codahale.metrics.annotation.Gauge;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.persistance.AnswerRepository;
+import de.thm.arsnova.persistance.ContentRepository;
+import de.thm.arsnova.persistance.SessionStatisticsRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.stagemonitor.core.metrics.MonitorGauges;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Preloads the data students request first after joining a session into the caches: the session's contents, the
+ * answer statistics of its active contents, its counters and its learning progress. Warm-ups run asynchronously and
+ * are skipped if the session has been warmed up recently. Feedback is kept in memory anyway and needs no warm-up.
+ */
+@Component
+@MonitorGauges
+public class SessionWarmUp {
+	private static final long WARM_UP_INTERVAL_MS = 5 * 60 * 1000L;
+	private static final int MAX_WARMED_UP_ANSWER_STATISTICS = 50;
+	private static final int QUEUE_CAPACITY = 100;
+
+	private static final Logger logger = LoggerFactory.getLogger(SessionWarmUp.class);
+
+	@Autowired
+	private ContentRepository contentRepository;
+
+	@Autowired
+	private AnswerRepository answerRepository;
+
+	@Autowired
+	private SessionStatisticsRepository sessionStatisticsRepository;
+
+	@Autowired
+	private ISessionCounterService sessionCounterService;
+
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+				final Thread thread = new Thread(r, "session-warm-up");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+	private final Map<String, Long> lastWarmUps = new ConcurrentHashMap<>();
+
+	private final AtomicLong warmUps = new AtomicLong();
+	private final AtomicLong warmUpTimeMs = new AtomicLong();
+	private final AtomicLong steps = new AtomicLong();
+	private final AtomicLong completedSteps = new AtomicLong();
+
+	/**
+	 * Schedules the warm-up of the session unless it has been warmed up within the last minutes.
+	 */
+	public void warmUp(final Session session) {
+		final long now = System.currentTimeMillis();
+		final Long lastWarmUp = lastWarmUps.get(session.getId());
+		if (lastWarmUp != null && now - lastWarmUp < WARM_UP_INTERVAL_MS) {
+			return;
+		}
+		lastWarmUps.put(session.getId(), now);
+		try {
+			executor.execute(() -> run(session));
+		} catch (final RejectedExecutionException e) {
+			/* Allow a retry with the next join instead of waiting for the interval to pass. */
+			lastWarmUps.remove(session.getId(), now);
+			logger.debug("Skipped warm-up of session {} since too many warm-ups are pending.", session.getKeyword());
+		}
+	}
+
+	@Gauge
+	public long sessionWarmUps() {
+		return warmUps.get();
+	}
+
+	@Gauge
+	public long sessionWarmUpAverageTimeMs() {
+		final long count = warmUps.get();
+
+		return count == 0 ? 0 : warmUpTimeMs.get() / count;
+	}
+
+	/**
+	 * Returns the percentage of warm-up steps which completed without errors.
+	 */
+	@Gauge
+	public long sessionWarmUpCoverage() {
+		final long total = steps.get();
+
+		return total == 0 ? 100 : completedSteps.get() * 100 / total;
+	}
+
+	@PreDestroy
+	public void destroy() {
+		executor.shutdownNow();
+	}
+
+	private void run(final Session session) {
+		final long start = System.currentTimeMillis();
+		final List<Content> contents = step(session, "contents", () -> contentRepository.getSkillQuestionsForUsers(session));
+		step(session, "counters", () -> sessionCounterService.getContentCount(session));
+		step(session, "learning progress", () -> sessionStatisticsRepository.getLearningProgress(session));
+		if (contents != null) {
+			int count = 0;
+			for (final Content content : contents) {
+				if (count++ >= MAX_WARMED_UP_ANSWER_STATISTICS) {
+					break;
+				}
+				if (!"freetext".equals(content.getQuestionType())) {
+					step(session, "answers", () -> answerRepository.getAnswers(content));
+				}
+			}
+		}
+		/* Recently warmed up sessions are forgotten after a while to keep the map small. */
+		lastWarmUps.values().removeIf(t -> start - t > WARM_UP_INTERVAL_MS);
+		final long duration = System.currentTimeMillis() - start;
+		warmUps.incrementAndGet();
+		warmUpTimeMs.addAndGet(duration);
+		logger.debug("Warmed up session {} in {} ms.", session.getKeyword(), duration);
+	}
+
+	/**
+	 * Loads data into the caches.
+	 *
+	 * @return the loaded data or <code>null</code> if loading failed
+	 */
+	private <T> T step(final Session session, final String name, final Supplier<T> step) {
+		steps.incrementAndGet();
+		try {
+			final T result = step.get();
+			completedSteps.incrementAndGet();
+
+			return result;
+		} catch (final RuntimeException e) {
+			logger.warn("Could not warm up {} of session {}.", name, session.getKeyword(), e);
+
+			return null;
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package de.thm.arsnova.services;
 
 import com.codahale.metrics.annotation.Gauge;
+import de.thm.arsnova.cache.RequestIdentityMap;
 import de.thm.arsnova.entities.DbUser;
 import de.thm.arsnova.entities.User;
 import de.thm.arsnova.exceptions.BadRequestException;
@@ -53,6 +54,7 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.util.UriUtils;
 import org.stagemonitor.core.metrics.MonitorGauges;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
@@ -90,6 +92,12 @@ public class UserService implements IUserService {
 
 	private static final Logger logger = LoggerFactory.getLogger(UserService.class);
 
+	private static final SimpleGrantedAuthority GUEST_AUTHORITY = new SimpleGrantedAuthority("ROLE_GUEST");
+	private static final SimpleGrantedAuthority DB_USER_AUTHORITY = new SimpleGrantedAuthority("ROLE_DB_USER");
+
+	/* Key of the current user in the request identity map */
+	private static final String CURRENT_USER_KEY = "current";
+
 	private static final ConcurrentHashMap<UUID, User> socketid2user = new ConcurrentHashMap<>();
 
 	/* used for Socket.IO online check solution (new) */
@@ -101,6 +109,9 @@ public class UserService implements IUserService {
 	@Autowired
 	private JavaMailSender mailSender;
 
+	@Autowired
+	private RequestIdentityMap requestIdentityMap;
+
 	@Value("${root-url}")
 	private String rootUrl;
 
@@ -140,6 +151,8 @@ public class UserService implements IUserService {
 	@Value("${security.admin-accounts}")
 	private String[] adminAccounts;
 
+	private Set<String> adminAccountSet;
+
 	private Pattern mailPattern;
 	private BytesKeyGenerator keygen;
 	private BCryptPasswordEncoder encoder;
@@ -151,6 +164,11 @@ public class UserService implements IUserService {
 		loginBans = Collections.synchronizedSet(new HashSet<String>());
 	}
 
+	@PostConstruct
+	public void init() {
+		adminAccountSet = new HashSet<>(Arrays.asList(adminAccounts));
+	}
+
 	@Scheduled(fixedDelay = LOGIN_TRY_RESET_DELAY_MS)
 	public void resetLoginTries() {
 		if (!loginTries.isEmpty()) {
@@ -175,6 +193,10 @@ public class UserService implements IUserService {
 		userRepository.deleteInactiveUsers(lastActivityBefore);
 	}
 
+	/**
+	 * Returns the user of the current authentication. The user is resolved once per request and reused as long as the
+	 * authentication does not change.
+	 */
 	@Override
 	public User getCurrentUser() {
 		final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -182,6 +204,17 @@ public class UserService implements IUserService {
 			return null;
 		}
 
+		final CurrentUser current = requestIdentityMap.get(CurrentUser.class, CURRENT_USER_KEY);
+		if (current != null && current.authentication == authentication) {
+			return current.user;
+		}
+		final User user = resolveUser(authentication);
+		requestIdentityMap.put(CurrentUser.class, CURRENT_USER_KEY, new CurrentUser(authentication, user));
+
+		return user;
+	}
+
+	private User resolveUser(final Authentication authentication) {
 		User user = null;
 
 		if (authentication instanceof Pac4jAuthenticationToken) {
@@ -195,9 +228,9 @@ public class UserService implements IUserService {
 		} else if (authentication instanceof UsernamePasswordAuthenticationToken) {
 			final UsernamePasswordAuthenticationToken token = (UsernamePasswordAuthenticationToken) authentication;
 			user = new User(token);
-			if (authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_GUEST"))) {
+			if (authentication.getAuthorities().contains(GUEST_AUTHORITY)) {
 				user.setType(User.GUEST);
-			} else if (authentication.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_DB_USER"))) {
+			} else if (authentication.getAuthorities().contains(DB_USER_AUTHORITY)) {
 				user.setType(User.ARSNOVA);
 			}
 		}
@@ -206,7 +239,7 @@ public class UserService implements IUserService {
 			throw new UnauthorizedException();
 		}
 
-		user.setAdmin(Arrays.asList(adminAccounts).contains(user.getUsername()));
+		user.setAdmin(adminAccountSet.contains(user.getUsername()));
 
 		return user;
 	}
@@ -542,4 +575,14 @@ public class UserService implements IUserService {
 			logger.warn("Mail \"{}\" could not be sent.", subject, e);
 		}
 	}
+
+	private static class CurrentUser {
+		private final Authentication authentication;
+		private final User user;
+
+		private CurrentUser(final Authentication authentication, final User user) {
+			this.authentication = authentication;
+			this.user = user;
+		}
+	}
 }
@@ -475,6 +475,11 @@ public class ARSnovaSocketIOServer implements ARSnovaSocket, NovaEventVisitor {
 		this.reportLecturerQuestionAvailable(event.getSession(), Collections.singletonList(event.getQuestion()));
 	}
 
+	@Override
+	public void visit(NewQuestionsEvent event) {
+		this.reportLecturerQuestionAvailable(event.getSession(), event.getQuestions());
+	}
+
 	@Override
 	public void visit(UnlockQuestionEvent event) {
 		this.reportLecturerQuestionAvailable(event.getSession(), Collections.singletonList(event.getQuestion()));
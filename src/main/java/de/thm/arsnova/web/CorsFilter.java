@@ -46,6 +46,7 @@ public class CorsFilter extends org.springframework.web.filter.CorsFilter {
 		config.addAllowedMethod("POST");
 		config.addAllowedMethod("PUT");
 		config.addAllowedMethod("DELETE");
+		config.addExposedHeader("X-Next-Cursor");
 		config.setAllowCredentials(true);
 		source = new UrlBasedCorsConfigurationSource();
 		source.registerCorsConfiguration("/**", config);
@@ -0,0 +1,59 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.web;
+
+import de.thm.arsnova.cache.RequestIdentityMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Binds a {@link RequestIdentityMap} to the thread handling a HTTP request and discards it once the request is
+ * completed.
+ */
+@Component
+public class RequestIdentityMapInterceptorHandler extends HandlerInterceptorAdapter {
+
+	@Autowired
+	private RequestIdentityMap requestIdentityMap;
+
+	@Override
+	public boolean preHandle(
+			final HttpServletRequest request,
+			final HttpServletResponse response,
+			final Object handler) throws Exception {
+
+		requestIdentityMap.open();
+
+		return super.preHandle(request, response, handler);
+	}
+
+	@Override
+	public void afterCompletion(
+			final HttpServletRequest request,
+			final HttpServletResponse response,
+			final Object handler,
+			final Exception ex) throws Exception {
+
+		requestIdentityMap.close();
+		super.afterCompletion(request, response, handler, ex);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.web;
+
+import de.thm.arsnova.cache.SessionRevisionTracker;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.persistance.SessionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Sets ETags based on session revisions for handlers annotated with {@link SessionRevisionETag} and answers
+ * conditional requests with <code>304 Not Modified</code> before the handler is executed.
+ */
+@Component
+public class SessionRevisionETagInterceptorHandler extends HandlerInterceptorAdapter {
+	private static final String SESSION_KEY_PARAM = "sessionkey";
+
+	@Autowired
+	private SessionRevisionTracker sessionRevisionTracker;
+
+	@Autowired
+	private SessionRepository sessionRepository;
+
+	@Override
+	public boolean preHandle(
+			final HttpServletRequest request,
+			final HttpServletResponse response,
+			final Object handler) throws Exception {
+
+		if (!HttpMethod.GET.matches(request.getMethod()) || !(handler instanceof HandlerMethod)) {
+			return true;
+		}
+		final SessionRevisionETag annotation = ((HandlerMethod) handler).getMethodAnnotation(SessionRevisionETag.class);
+		if (annotation == null) {
+			return true;
+		}
+		final String sessionKey = getSessionKey(request);
+		if (sessionKey == null) {
+			return true;
+		}
+		final Session session = sessionRepository.getSessionFromKeyword(sessionKey);
+		if (session == null) {
+			return true;
+		}
+
+		final String etag = buildETag(request, sessionRevisionTracker.getRevision(session.getId(), annotation.value()));
+		response.setHeader(HttpHeaders.ETAG, etag);
+		if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+
+			return false;
+		}
+
+		return true;
+	}
+
+	private String getSessionKey(final HttpServletRequest request) {
+		@SuppressWarnings("unchecked")
+		final Map<String, String> pathVariables =
+				(Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		if (pathVariables != null && pathVariables.containsKey(SESSION_KEY_PARAM)) {
+			return pathVariables.get(SESSION_KEY_PARAM);
+		}
+
+		return request.getParameter(SESSION_KEY_PARAM);
+	}
+
+	private boolean matches(final String ifNoneMatch, final String etag) {
+		if (ifNoneMatch == null) {
+			return false;
+		}
+		for (final String candidate : ifNoneMatch.split(",")) {
+			final String trimmed = candidate.trim();
+			if ("*".equals(trimmed) || etag.equals(trimmed)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * The responses of an endpoint depend on the user, the request parameters and the requested range in addition to
+	 * the session's data. A hash of these values is part of the ETag.
+	 */
+	private String buildETag(final HttpServletRequest request, final String revision) {
+		final String variant = request.getRemoteUser() + "|" + request.getRequestURI() + "?" + request.getQueryString()
+				+ "|" + request.getHeader(HttpHeaders.RANGE);
+
+		return "\"" + revision + "-" + Integer.toHexString(variant.hashCode()) + "\"";
+	}
+}
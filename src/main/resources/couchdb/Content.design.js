@@ -17,6 +17,13 @@ var designDoc = {
 				}
 			},
 			"reduce": "_count"
+		},
+		"by_piroundendtime": {
+			"map": function (doc) {
+				if (doc.type === "skill_question" && doc.piRoundActive && doc.piRoundEndTime > 0) {
+					emit(doc.piRoundEndTime, {_rev: doc._rev});
+				}
+			}
 		}
 	}
 };
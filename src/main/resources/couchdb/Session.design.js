@@ -23,6 +23,20 @@ var designDoc = {
 				}
 			}
 		},
+		"by_creator_name": {
+			"map": function (doc) {
+				if (doc.type === "session" && doc.sessionType == null) {
+					emit([doc.creator, (doc.name || "").toLowerCase()], {_rev: doc._rev});
+				}
+			}
+		},
+		"by_creator_shortname": {
+			"map": function (doc) {
+				if (doc.type === "session" && doc.sessionType == null) {
+					emit([doc.creator, (doc.shortName || "").toLowerCase()], {_rev: doc._rev});
+				}
+			}
+		},
 		"partial_by_sessiontype_creator_name": {
 			"map": function (doc) {
 				if (doc.type === "session") {
@@ -0,0 +1,101 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoundedCacheManagerTest {
+	private BoundedCacheManager cacheManager;
+
+	@After
+	public void tearDown() {
+		if (cacheManager != null) {
+			cacheManager.destroy();
+		}
+	}
+
+	@Test
+	public void testShouldBoundCacheBySpecification() {
+		cacheManager = new BoundedCacheManager(new MockEnvironment().withProperty("cache.questions.spec", "maximumSize=2"));
+		final Cache cache = cacheManager.getCache("questions");
+		for (int i = 0; i < 10; i++) {
+			cache.put(i, "value");
+		}
+
+		assertTrue(((BoundedCache) cache).getSize() <= 2);
+		assertTrue(cacheManager.cacheEvictions() >= 8);
+	}
+
+	@Test
+	public void testShouldFallBackToDefaultSpecification() {
+		cacheManager = new BoundedCacheManager(new MockEnvironment().withProperty("cache.default.spec", "maximumSize=1"));
+		final Cache cache = cacheManager.getCache("sessions");
+		cache.put("a", "value");
+		cache.put("b", "value");
+
+		assertEquals(1, ((BoundedCache) cache).getSize());
+	}
+
+	@Test
+	public void testShouldReturnSameCacheForName() {
+		cacheManager = new BoundedCacheManager(new MockEnvironment());
+
+		assertTrue(cacheManager.getCache("questions") == cacheManager.getCache("questions"));
+		assertTrue(cacheManager.getCacheNames().contains("questions"));
+	}
+
+	@Test
+	public void testShouldStoreNullValues() {
+		cacheManager = new BoundedCacheManager(new MockEnvironment());
+		final Cache cache = cacheManager.getCache("questions");
+		cache.put("id", null);
+
+		final Cache.ValueWrapper wrapper = cache.get("id");
+		assertNotNull(wrapper);
+		assertNull(wrapper.get());
+	}
+
+	@Test
+	public void testShouldCountHitsAndMisses() {
+		cacheManager = new BoundedCacheManager(new MockEnvironment());
+		final Cache cache = cacheManager.getCache("questions");
+		cache.get("id");
+		cache.put("id", "value");
+		cache.get("id");
+		cache.get("id");
+
+		assertEquals(2, cacheManager.cacheHits());
+		assertEquals(1, cacheManager.cacheMisses());
+	}
+
+	@Test
+	public void testShouldParseTimeToLive() {
+		assertEquals(30 * 60 * 1000L, BoundedCacheManager.parseTimeToLive("maximumSize=10,expireAfterWrite=30m"));
+		assertEquals(2 * 3600 * 1000L, BoundedCacheManager.parseTimeToLive("expireAfterWrite=2h"));
+		assertEquals(5000L, BoundedCacheManager.parseTimeToLive("expireAfterWrite=5s"));
+		assertEquals(0L, BoundedCacheManager.parseTimeToLive("maximumSize=10,expireAfterAccess=30m"));
+	}
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import com.google.common.cache.CacheBuilder;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoundedCacheTest {
+	private static BoundedCache createCache() {
+		return new BoundedCache("test", CacheBuilder.newBuilder().recordStats().build());
+	}
+
+	/**
+	 * Creates a cache whose entries live 200 ms and are refreshed ahead during the last 180 ms.
+	 */
+	private static BoundedCache createRefreshingCache(final Executor refreshExecutor) {
+		return new BoundedCache("test", CacheBuilder.newBuilder().build(), 200, 0, 0.9, null, null, refreshExecutor);
+	}
+
+	@Test
+	public void testShouldLoadConcurrentMissesOnce() throws Exception {
+		final BoundedCache cache = createCache();
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<String>> results = new ArrayList<>();
+			results.add(executor.submit(() -> cache.get("id", () -> {
+				loads.incrementAndGet();
+				loading.countDown();
+				release.await();
+
+				return "value";
+			})));
+			loading.await();
+			for (int i = 0; i < 3; i++) {
+				results.add(executor.submit(() -> cache.get("id", () -> {
+					loads.incrementAndGet();
+
+					return "other";
+				})));
+			}
+			/* Give the other callers time to block on the pending load. */
+			Thread.sleep(100);
+			release.countDown();
+			for (final Future<String> result : results) {
+				assertEquals("value", result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, loads.get());
+		/* Callers which started after the load had completed are served the cached value. */
+		assertEquals(3, cache.getCoalescedLoadCount() + cache.getStats().hitCount());
+	}
+
+	@Test
+	public void testShouldNotCacheFailedLoads() {
+		final BoundedCache cache = createCache();
+		try {
+			cache.get("id", () -> {
+				throw new IllegalStateException();
+			});
+			fail("Expected the load to fail.");
+		} catch (final Cache.ValueRetrievalException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		assertEquals("value", cache.get("id", () -> "value"));
+	}
+
+	@Test
+	public void testShouldCacheNullResults() {
+		final BoundedCache cache = createCache();
+		final AtomicInteger loads = new AtomicInteger();
+		cache.get("id", () -> {
+			loads.incrementAndGet();
+
+			return null;
+		});
+		cache.get("id", () -> {
+			loads.incrementAndGet();
+
+			return null;
+		});
+
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testShouldExpireEntriesWithinJitteredTimeToLive() throws InterruptedException {
+		final BoundedCache cache = new BoundedCache("test", CacheBuilder.newBuilder().build(), 200, 0.5, 0);
+		cache.put("id", "value");
+
+		assertEquals("value", cache.get("id").get());
+		Thread.sleep(250);
+		assertNull(cache.get("id"));
+	}
+
+	@Test
+	public void testShouldServeCurrentValueWhileRefreshingInBackground() throws InterruptedException {
+		final List<Runnable> refreshes = new ArrayList<>();
+		final BoundedCache cache = createRefreshingCache(refreshes::add);
+		assertEquals("old", cache.get("id", () -> "old"));
+		Thread.sleep(50);
+
+		assertEquals("old", cache.get("id", () -> "new"));
+		assertEquals("old", cache.get("id", () -> "new"));
+		assertEquals(1, refreshes.size());
+
+		refreshes.get(0).run();
+		assertEquals("new", cache.get("id", () -> "other"));
+		assertEquals(1, cache.getRefreshCount());
+	}
+
+	@Test
+	public void testShouldRetryRefreshRejectedByExecutor() throws InterruptedException {
+		final List<Runnable> refreshes = new ArrayList<>();
+		final AtomicInteger attempts = new AtomicInteger();
+		final BoundedCache cache = createRefreshingCache(task -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new RejectedExecutionException();
+			}
+			refreshes.add(task);
+		});
+		cache.get("id", () -> "old");
+		Thread.sleep(50);
+
+		assertEquals("old", cache.get("id", () -> "new"));
+		assertEquals("old", cache.get("id", () -> "new"));
+		assertEquals(2, attempts.get());
+		assertEquals(1, refreshes.size());
+	}
+
+	@Test
+	public void testShouldNotRefreshWithoutExecutor() throws InterruptedException {
+		final BoundedCache cache = createRefreshingCache(null);
+		cache.get("id", () -> "old");
+		Thread.sleep(50);
+
+		assertEquals("old", cache.get("id", () -> "new"));
+		assertEquals(0, cache.getRefreshCount());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.DeleteAllLectureAnswersEvent;
+import de.thm.arsnova.events.DeleteSessionEvent;
+import de.thm.arsnova.events.FeatureChangeEvent;
+import de.thm.arsnova.events.NewAnswerEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CacheBusterTest {
+	private BoundedCacheManager cacheManager;
+	private CacheBuster cacheBuster;
+	private Session session;
+
+	@Before
+	public void setUp() {
+		cacheManager = new BoundedCacheManager(new MockEnvironment());
+		cacheBuster = new CacheBuster();
+		ReflectionTestUtils.setField(cacheBuster, "cacheManager", cacheManager);
+		session = session("s1");
+	}
+
+	@After
+	public void tearDown() {
+		cacheManager.destroy();
+	}
+
+	private static Session session(final String id) {
+		final Session session = new Session();
+		session.setId(id);
+		session.setKeyword("key" + id);
+
+		return session;
+	}
+
+	private static Content content(final String id, final Session session, final String variant) {
+		final Content content = new Content();
+		content.setId(id);
+		content.setSessionId(session.getId());
+		content.setQuestionVariant(variant);
+
+		return content;
+	}
+
+	@Test
+	public void testShouldEvictAnswersOfAnsweredContent() {
+		final Content answered = content("c1", session, "lecture");
+		final Content other = content("c2", session, "lecture");
+		final Cache answers = cacheManager.getCache("answers");
+		answers.put(answered, "answers");
+		answers.put(other, "answers");
+
+		cacheBuster.visit(new NewAnswerEvent(this, session, null, null, answered));
+
+		assertNull(answers.get(answered));
+		assertNotNull(answers.get(other));
+		assertEquals(Long.valueOf(1), cacheBuster.getInvalidationCounts().get("answers"));
+	}
+
+	@Test
+	public void testShouldOnlyEvictAnswersOfDeletedVariant() {
+		final Content lecture = content("c1", session, "lecture");
+		final Content preparation = content("c2", session, "preparation");
+		final Content otherSession = content("c3", session("s2"), "lecture");
+		final Cache answers = cacheManager.getCache("answers");
+		answers.put(lecture, "answers");
+		answers.put(preparation, "answers");
+		answers.put(otherSession, "answers");
+
+		cacheBuster.visit(new DeleteAllLectureAnswersEvent(this, session));
+
+		assertNull(answers.get(lecture));
+		assertNotNull(answers.get(preparation));
+		assertNotNull(answers.get(otherSession));
+	}
+
+	@Test
+	public void testShouldEvictDeletedSession() {
+		final Cache sessions = cacheManager.getCache("sessions");
+		final Cache statistics = cacheManager.getCache("statistics");
+		sessions.put(session.getId(), session);
+		sessions.put(session.getKeyword(), session);
+		sessions.put("s2", session("s2"));
+		statistics.put(SimpleKey.EMPTY, "statistics");
+
+		cacheBuster.visit(new DeleteSessionEvent(this, session));
+
+		assertNull(sessions.get(session.getId()));
+		assertNull(sessions.get(session.getKeyword()));
+		assertNotNull(sessions.get("s2"));
+		assertNull(statistics.get(SimpleKey.EMPTY));
+		assertEquals(Long.valueOf(2), cacheBuster.getInvalidationCounts().get("sessions"));
+	}
+
+	@Test
+	public void testShouldIgnoreUndeclaredEvents() {
+		final Cache sessions = cacheManager.getCache("sessions");
+		sessions.put(session.getId(), session);
+
+		cacheBuster.visit(new FeatureChangeEvent(this, session));
+
+		assertNotNull(sessions.get(session.getId()));
+		assertEquals(0, cacheBuster.cacheInvalidations());
+	}
+}
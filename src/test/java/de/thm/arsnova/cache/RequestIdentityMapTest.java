@@ -0,0 +1,121 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class RequestIdentityMapTest {
+	private RequestIdentityMap identityMap;
+	private Session session;
+
+	@Before
+	public void setUp() {
+		identityMap = new RequestIdentityMap();
+		session = new Session();
+		session.setId("s1");
+	}
+
+	@Test
+	public void testShouldServeEntitiesWithinScope() {
+		identityMap.open();
+		try {
+			assertNull(identityMap.get(Session.class, "s1"));
+			identityMap.put(Session.class, "s1", session);
+
+			assertSame(session, identityMap.get(Session.class, "s1"));
+			assertNull(identityMap.get(Content.class, "s1"));
+		} finally {
+			identityMap.close();
+		}
+		assertEquals(1, identityMap.requestIdentityMapHits());
+	}
+
+	@Test
+	public void testShouldNotStoreOutsideOfScope() {
+		identityMap.put(Session.class, "s1", session);
+
+		assertNull(identityMap.get(Session.class, "s1"));
+		assertEquals(0, identityMap.requestIdentityMapMisses());
+	}
+
+	@Test
+	public void testShouldDiscardEntitiesWhenOutermostScopeIsClosed() {
+		identityMap.open();
+		identityMap.put(Session.class, "s1", session);
+		identityMap.open();
+		identityMap.close();
+		assertSame(session, identityMap.get(Session.class, "s1"));
+		identityMap.close();
+
+		identityMap.open();
+		try {
+			assertNull(identityMap.get(Session.class, "s1"));
+		} finally {
+			identityMap.close();
+		}
+	}
+
+	@Test
+	public void testShouldEvictEntitiesOfType() {
+		identityMap.open();
+		try {
+			identityMap.put(Session.class, "s1", session);
+			final Content content = new Content();
+			identityMap.put(Content.class, "c1", content);
+
+			identityMap.evict(Session.class);
+
+			assertNull(identityMap.get(Session.class, "s1"));
+			assertSame(content, identityMap.get(Content.class, "c1"));
+		} finally {
+			identityMap.close();
+		}
+	}
+
+	@Test
+	public void testShouldNotShareEntitiesBetweenThreads() throws InterruptedException {
+		identityMap.open();
+		try {
+			identityMap.put(Session.class, "s1", session);
+			final AtomicReference<Session> other = new AtomicReference<>(session);
+			final Thread thread = new Thread(() -> {
+				identityMap.open();
+				try {
+					other.set(identityMap.get(Session.class, "s1"));
+				} finally {
+					identityMap.close();
+				}
+			});
+			thread.start();
+			thread.join();
+
+			assertNull(other.get());
+		} finally {
+			identityMap.close();
+		}
+	}
+}
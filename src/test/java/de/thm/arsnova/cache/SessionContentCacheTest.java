@@ -0,0 +1,110 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import de.thm.arsnova.entities.Content;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionContentCacheTest {
+	private SessionContentCache cache;
+	private SessionRevisionTracker tracker;
+	private AtomicInteger loads;
+	private Supplier<Map<String, List<Content>>> loader;
+
+	@Before
+	public void setUp() {
+		tracker = new SessionRevisionTracker();
+		cache = new SessionContentCache();
+		ReflectionTestUtils.setField(cache, "cacheManager", new BoundedCacheManager(new MockEnvironment()));
+		ReflectionTestUtils.setField(cache, "sessionRevisionTracker", tracker);
+		loads = new AtomicInteger();
+		loader = () -> {
+			loads.incrementAndGet();
+			final Map<String, List<Content>> lists = new HashMap<>();
+			lists.put("lecture", new ArrayList<>(Collections.singletonList(new Content())));
+			lists.put("preparation", Collections.<Content>emptyList());
+
+			return lists;
+		};
+	}
+
+	@Test
+	public void testShouldLoadAllListsOfSessionOnce() {
+		assertEquals(1, cache.get("s1", "lecture", loader).size());
+		assertTrue(cache.get("s1", "preparation", loader).isEmpty());
+		assertTrue(cache.get("s1", "flashcard", loader).isEmpty());
+
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testShouldOnlyReloadEvictedSession() {
+		cache.get("s1", "lecture", loader);
+		cache.get("s2", "lecture", loader);
+
+		cache.evict("s1");
+		cache.get("s1", "lecture", loader);
+		cache.get("s2", "lecture", loader);
+
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void testShouldBumpContentRevisionOnEviction() {
+		final String revision = tracker.getRevision("s1", SessionRevisionTracker.Scope.CONTENT);
+
+		cache.evict("s1");
+
+		assertNotEquals(revision, tracker.getRevision("s1", SessionRevisionTracker.Scope.CONTENT));
+	}
+
+	@Test
+	public void testShouldCountHitsAndMissesPerSession() {
+		cache.get("s1", "lecture", loader);
+		cache.get("s1", "preparation", loader);
+		cache.get("s1", "lecture", loader);
+		cache.get("s2", "lecture", loader);
+
+		assertEquals(2, cache.getHitCount("s1"));
+		assertEquals(1, cache.getMissCount("s1"));
+		assertEquals(0, cache.getHitCount("s2"));
+		assertEquals(1, cache.getMissCount("s2"));
+		assertEquals(2, cache.sessionContentCacheHits());
+		assertEquals(2, cache.sessionContentCacheMisses());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testShouldReturnUnmodifiableLists() {
+		cache.get("s1", "lecture", loader).add(new Content());
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import de.thm.arsnova.cache.SessionRevisionTracker.Scope;
+import de.thm.arsnova.entities.Comment;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.DeleteAllQuestionsEvent;
+import de.thm.arsnova.events.DeleteCommentEvent;
+import de.thm.arsnova.events.FeatureChangeEvent;
+import de.thm.arsnova.events.NewAnswerEvent;
+import de.thm.arsnova.events.NewCommentEvent;
+import de.thm.arsnova.events.NewQuestionEvent;
+import de.thm.arsnova.events.NovaEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SessionRevisionTrackerTest {
+	private SessionRevisionTracker tracker;
+	private Session session;
+
+	@Before
+	public void setUp() {
+		tracker = new SessionRevisionTracker();
+		session = new Session();
+		session.setId("session");
+		session.setKeyword("12345678");
+	}
+
+	private String revision(final Scope scope) {
+		return tracker.getRevision(session.getId(), scope);
+	}
+
+	/**
+	 * Asserts that the event changes exactly the revisions of the given scopes.
+	 */
+	private void assertBumps(final NovaEvent event, final Scope... bumped) {
+		final String[] before = new String[Scope.values().length];
+		for (final Scope scope : Scope.values()) {
+			before[scope.ordinal()] = revision(scope);
+		}
+		tracker.onApplicationEvent(event);
+		for (final Scope scope : Scope.values()) {
+			boolean expected = false;
+			for (final Scope b : bumped) {
+				expected |= b == scope;
+			}
+			if (expected) {
+				assertNotEquals(scope.name(), before[scope.ordinal()], revision(scope));
+			} else {
+				assertEquals(scope.name(), before[scope.ordinal()], revision(scope));
+			}
+		}
+	}
+
+	@Test
+	public void testRevisionIsStableWithoutChanges() {
+		assertEquals(tracker.getRevision(session.getId(), Scope.CONTENT, Scope.ANSWERS),
+				tracker.getRevision(session.getId(), Scope.CONTENT, Scope.ANSWERS));
+	}
+
+	@Test
+	public void testCommentEventsBumpComments() {
+		assertBumps(new NewCommentEvent(this, session, new Comment()), Scope.COMMENTS);
+		assertBumps(new DeleteCommentEvent(this, session, new Comment()), Scope.COMMENTS);
+	}
+
+	@Test
+	public void testNewQuestionBumpsContent() {
+		assertBumps(new NewQuestionEvent(this, session, new Content()), Scope.CONTENT);
+	}
+
+	@Test
+	public void testNewAnswerBumpsAnswers() {
+		assertBumps(new NewAnswerEvent(this, session, null, null, new Content()), Scope.ANSWERS);
+	}
+
+	@Test
+	public void testDeleteAllQuestionsBumpsContentAndAnswers() {
+		assertBumps(new DeleteAllQuestionsEvent(this, session), Scope.CONTENT, Scope.ANSWERS);
+	}
+
+	@Test
+	public void testFeatureChangeBumpsFeatures() {
+		assertBumps(new FeatureChangeEvent(this, session), Scope.FEATURES);
+	}
+
+	@Test
+	public void testRevisionsOfOtherSessionsAreUnchanged() {
+		final String other = tracker.getRevision("other", Scope.values());
+
+		tracker.increment(session.getId(), Scope.values());
+
+		assertEquals(other, tracker.getRevision("other", Scope.values()));
+	}
+
+	@Test
+	public void testBumpsAreAppliedByOtherNodes() {
+		final SharedCacheTier sharedTier = new InProcessSharedCacheTier();
+		ReflectionTestUtils.setField(tracker, "sharedTier", sharedTier);
+		tracker.init();
+		final SessionRevisionTracker otherNode = new SessionRevisionTracker();
+		ReflectionTestUtils.setField(otherNode, "sharedTier", sharedTier);
+		otherNode.init();
+		final String comments = otherNode.getRevision(session.getId(), Scope.COMMENTS);
+		final String content = otherNode.getRevision(session.getId(), Scope.CONTENT);
+
+		tracker.onApplicationEvent(new NewCommentEvent(this, session, new Comment()));
+
+		assertNotEquals(comments, otherNode.getRevision(session.getId(), Scope.COMMENTS));
+		assertEquals(content, otherNode.getRevision(session.getId(), Scope.CONTENT));
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.cache;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TwoTierCacheTest {
+	private BoundedCacheManager node1;
+	private BoundedCacheManager node2;
+
+	@Before
+	public void setUp() {
+		final SharedCacheTier sharedTier = new InProcessSharedCacheTier();
+		final MockEnvironment env = new MockEnvironment().withProperty("cache.shared.names", "questions");
+		node1 = new BoundedCacheManager(env, sharedTier);
+		node2 = new BoundedCacheManager(env, sharedTier);
+	}
+
+	@Test
+	public void testShouldServeValuesStoredByOtherNode() {
+		node1.getCache("questions").put("id", "value");
+
+		assertEquals("value", node2.getCache("questions").get("id", () -> "loaded"));
+		assertEquals(1, node2.cacheSharedTierHits());
+	}
+
+	@Test
+	public void testShouldInvalidateNearCachesOfOtherNodes() {
+		final Cache cache1 = node1.getCache("questions");
+		final Cache cache2 = node2.getCache("questions");
+		cache1.put("id", "value");
+		assertEquals("value", cache2.get("id").get());
+
+		cache1.evict("id");
+
+		assertNull(cache2.get("id"));
+		assertEquals(1, node2.cacheInvalidationsReceived());
+	}
+
+	@Test
+	public void testShouldEvictMatchingEntriesStoredByOtherNode() {
+		node2.getCache("questions").put("id", "value");
+		node1.getCache("questions");
+
+		assertEquals(1, node1.evictIf((key, value) -> "value".equals(value)));
+		assertNull(node2.getCache("questions").get("id"));
+	}
+
+	@Test
+	public void testShouldNotShareUnlistedCaches() {
+		node1.getCache("answers").put("id", "value");
+
+		assertNull(node2.getCache("answers").get("id"));
+	}
+}
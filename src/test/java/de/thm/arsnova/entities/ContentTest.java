@@ -20,8 +20,12 @@ package de.thm.arsnova.entities;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ContentTest {
 
@@ -151,6 +155,166 @@ public class ContentTest {
 		assertEquals(30, q.calculateValue(answer3));
 	}
 
+	@Test
+	public void shouldCalculateLargeGridAnswersLikeLinearScan() {
+		final Random random = new Random(42);
+		final List<PossibleAnswer> possibleAnswers = new ArrayList<>();
+		for (int x = 0; x < 30; x++) {
+			for (int y = 0; y < 30; y++) {
+				final PossibleAnswer p = new PossibleAnswer();
+				p.setText(x + ";" + y);
+				p.setValue(random.nextInt(21) - 10);
+				possibleAnswers.add(p);
+			}
+		}
+		/* Duplicate texts are summed up for grid questions */
+		final PossibleAnswer duplicate = new PossibleAnswer();
+		duplicate.setText("0;0");
+		duplicate.setValue(5);
+		possibleAnswers.add(duplicate);
+		Content q = new Content();
+		q.setQuestionType("grid");
+		q.setPossibleAnswers(possibleAnswers);
+
+		for (int i = 0; i < 200; i++) {
+			final StringBuilder text = new StringBuilder();
+			final int cells = random.nextInt(50);
+			for (int j = 0; j < cells; j++) {
+				if (j > 0) {
+					text.append(',');
+				}
+				text.append(random.nextInt(32)).append(';').append(random.nextInt(32));
+			}
+			if (random.nextBoolean()) {
+				text.append(",,");
+			}
+			Answer answer = createAnswerWithText(text.toString());
+
+			assertEquals(text.toString(), linearScanValue(q, answer), q.calculateValue(answer));
+		}
+	}
+
+	@Test
+	public void shouldCalculateMultipleChoiceAnswersLikeLinearScan() {
+		final Random random = new Random(23);
+		final List<PossibleAnswer> possibleAnswers = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			final PossibleAnswer p = new PossibleAnswer();
+			p.setText("Option " + i);
+			p.setValue(random.nextInt(21) - 10);
+			possibleAnswers.add(p);
+		}
+		Content q = new Content();
+		q.setQuestionType("mc");
+		q.setPossibleAnswers(possibleAnswers);
+
+		for (int i = 0; i < 200; i++) {
+			final StringBuilder text = new StringBuilder();
+			/* Answers with fewer or more selections than options are scored as far as they overlap */
+			final int options = random.nextInt(12);
+			for (int j = 0; j < options; j++) {
+				if (j > 0) {
+					text.append(',');
+				}
+				text.append(random.nextInt(3) == 0 ? "0" : "1");
+			}
+			Answer answer = createAnswerWithText(text.toString());
+
+			assertEquals(text.toString(), linearScanValue(q, answer), q.calculateValue(answer));
+		}
+	}
+
+	@Test
+	public void shouldRescoreAfterPossibleAnswersChanged() {
+		final PossibleAnswer p1 = new PossibleAnswer();
+		p1.setText("Yes");
+		p1.setValue(10);
+		final List<PossibleAnswer> possibleAnswers = new ArrayList<>();
+		possibleAnswers.add(p1);
+		Content q = new Content();
+		q.setQuestionType("yesno");
+		q.setPossibleAnswers(possibleAnswers);
+		Answer answer = createAnswerWithText("Yes");
+
+		assertEquals(10, q.calculateValue(answer));
+
+		final PossibleAnswer p2 = new PossibleAnswer();
+		p2.setText("Yes");
+		p2.setValue(20);
+		final List<PossibleAnswer> changedPossibleAnswers = new ArrayList<>();
+		changedPossibleAnswers.add(p2);
+		q.setPossibleAnswers(changedPossibleAnswers);
+
+		assertEquals(20, q.calculateValue(answer));
+	}
+
+	@Test
+	public void shouldNormalizeFreeTextAnswersWithoutModifyingContent() {
+		Content q = new Content();
+		q.setQuestionType("freetext");
+		q.setStrictMode(true);
+		q.setIgnoreCaseSensitive(true);
+		q.setIgnoreWhitespaces(true);
+		q.setIgnorePunctuation(true);
+		q.setCorrectAnswer("Hello, World!");
+		q.setRating(5);
+		Answer answer = new Answer();
+		answer.setAnswerTextRaw(" hello\tworld. ");
+
+		q.checkTextStrictOptions(answer);
+
+		assertEquals("helloworld", answer.getAnswerTextRaw());
+		assertEquals("Hello, World!", q.getCorrectAnswer());
+		assertTrue(q.isSuccessfulFreeTextAnswer(answer.getAnswerTextRaw()));
+		assertEquals(5, q.evaluateCorrectAnswerFixedText(answer.getAnswerTextRaw()));
+	}
+
+	@Test
+	public void shouldOnlyApplyEnabledFreeTextOptions() {
+		Content q = new Content();
+		q.setQuestionType("freetext");
+		q.setStrictMode(true);
+		q.setIgnorePunctuation(true);
+		q.setCorrectAnswer("Hello World!");
+		Answer answer = new Answer();
+		answer.setAnswerTextRaw("hello World");
+
+		q.checkTextStrictOptions(answer);
+
+		assertEquals("hello World", answer.getAnswerTextRaw());
+		assertFalse(q.isSuccessfulFreeTextAnswer(answer.getAnswerTextRaw()));
+
+		q.setIgnoreCaseSensitive(true);
+		answer.setAnswerTextRaw("hello World");
+		q.checkTextStrictOptions(answer);
+
+		assertTrue(q.isSuccessfulFreeTextAnswer(answer.getAnswerTextRaw()));
+	}
+
+	/**
+	 * Reference implementation which scores answers by scanning the possible answers.
+	 */
+	private static int linearScanValue(Content q, Answer answer) {
+		int value = 0;
+		String[] answers = answer.getAnswerText().split(",");
+		if ("mc".equals(q.getQuestionType())) {
+			for (int i = 0; i < q.getPossibleAnswers().size() && i < answers.length; i++) {
+				if ("1".equals(answers[i])) {
+					value += q.getPossibleAnswers().get(i).getValue();
+				}
+			}
+		} else {
+			for (String a : answers) {
+				for (PossibleAnswer p : q.getPossibleAnswers()) {
+					if (a.equals(p.getText())) {
+						value += p.getValue();
+					}
+				}
+			}
+		}
+		return value;
+	}
+
 	private static Answer createAnswerWithText(String text) {
 		Answer answer = new Answer();
 		answer.setAnswerText(text);
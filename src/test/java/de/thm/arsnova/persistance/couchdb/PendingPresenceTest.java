@@ -0,0 +1,154 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.persistance.couchdb;
+
+import de.thm.arsnova.entities.LoggedIn;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.entities.VisitedSession;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PendingPresenceTest {
+	private static final long NOW = 1500000000000L;
+
+	private static Session session(final String id) {
+		final Session session = new Session();
+		session.setId(id);
+		session.setKeyword("key" + id);
+		session.setName("Session " + id);
+
+		return session;
+	}
+
+	private static LoggedIn stored(final String sessionId, final long timestamp, final String... visitedIds) {
+		final LoggedIn loggedIn = new LoggedIn();
+		loggedIn.setId("doc");
+		loggedIn.setRevision("1-a");
+		loggedIn.setUser("user");
+		loggedIn.setSessionId(sessionId);
+		loggedIn.setTimestamp(timestamp);
+		for (final String id : visitedIds) {
+			loggedIn.addVisitedSession(session(id));
+		}
+
+		return loggedIn;
+	}
+
+	private static List<String> visitedIds(final LoggedIn loggedIn) {
+		final List<String> ids = new ArrayList<>();
+		for (final VisitedSession vs : loggedIn.getVisitedSessions()) {
+			ids.add(vs.getId());
+		}
+
+		return ids;
+	}
+
+	@Test
+	public void testShouldInitializeNewDocument() {
+		final PendingPresence presence = new PendingPresence();
+		presence.record(session("s1"), NOW);
+		final LoggedIn loggedIn = new LoggedIn();
+
+		assertTrue(presence.mergeInto(loggedIn));
+		assertEquals("s1", loggedIn.getSessionId());
+		assertEquals(NOW, loggedIn.getTimestamp());
+		assertEquals(Arrays.asList("s1"), visitedIds(loggedIn));
+	}
+
+	@Test
+	public void testShouldSkipRecentPresenceInSameSession() {
+		final PendingPresence presence = new PendingPresence();
+		presence.record(session("s1"), NOW);
+		final LoggedIn loggedIn = stored("s1", NOW - 1000, "s1");
+
+		assertFalse(presence.mergeInto(loggedIn));
+		assertEquals(NOW - 1000, loggedIn.getTimestamp());
+	}
+
+	@Test
+	public void testShouldRefreshOutdatedPresenceInSameSession() {
+		final PendingPresence presence = new PendingPresence();
+		presence.record(session("s1"), NOW);
+		final LoggedIn loggedIn = stored("s1", NOW - PendingPresence.UPDATE_INTERVAL_MS, "s1");
+
+		assertTrue(presence.mergeInto(loggedIn));
+		assertEquals(NOW, loggedIn.getTimestamp());
+	}
+
+	@Test
+	public void testShouldAddVisitedSessionsWithoutReplacingMoreRecentSession() {
+		final PendingPresence presence = new PendingPresence();
+		presence.record(session("s1"), NOW);
+		final LoggedIn loggedIn = stored("s2", NOW + 1000, "s0", "s2");
+
+		assertTrue(presence.mergeInto(loggedIn));
+		assertEquals("s2", loggedIn.getSessionId());
+		assertEquals(NOW + 1000, loggedIn.getTimestamp());
+		assertEquals(Arrays.asList("s0", "s2", "s1"), visitedIds(loggedIn));
+	}
+
+	@Test
+	public void testShouldKeepLatestSessionOfCoalescedJoins() {
+		final PendingPresence presence = new PendingPresence();
+		presence.record(session("s2"), NOW + 1000);
+		presence.record(session("s1"), NOW);
+		final LoggedIn loggedIn = new LoggedIn();
+
+		assertTrue(presence.mergeInto(loggedIn));
+		assertEquals("s2", loggedIn.getSessionId());
+		assertEquals(Arrays.asList("s2", "s1"), visitedIds(loggedIn));
+	}
+
+	@Test
+	public void testShouldMergeRequeuedPresence() {
+		final PendingPresence failed = new PendingPresence();
+		failed.record(session("s1"), NOW);
+		failed.record(session("s2"), NOW + 1000);
+		final PendingPresence pending = new PendingPresence();
+		pending.record(session("s3"), NOW + 2000);
+
+		pending.mergeFrom(failed);
+
+		assertEquals(Arrays.asList("s3", "s1", "s2"), pending.getVisitedSessionIds());
+		final LoggedIn loggedIn = new LoggedIn();
+		pending.mergeInto(loggedIn);
+		assertEquals("s3", loggedIn.getSessionId());
+		assertEquals(NOW + 2000, loggedIn.getTimestamp());
+	}
+
+	@Test
+	public void testShouldTakeMoreRecentSessionFromRequeuedPresence() {
+		final PendingPresence failed = new PendingPresence();
+		failed.record(session("s1"), NOW + 1000);
+		final PendingPresence pending = new PendingPresence();
+		pending.record(session("s2"), NOW);
+
+		pending.mergeFrom(failed);
+		final LoggedIn loggedIn = new LoggedIn();
+		pending.mergeInto(loggedIn);
+
+		assertEquals("s1", loggedIn.getSessionId());
+	}
+}
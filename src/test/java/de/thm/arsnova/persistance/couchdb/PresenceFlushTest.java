@@ -0,0 +1,149 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.persistance.couchdb;
+
+import de.thm.arsnova.entities.LoggedIn;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.entities.TestUser;
+import de.thm.arsnova.entities.VisitedSession;
+import org.ektorp.CouchDbConnector;
+import org.ektorp.DocumentOperationResult;
+import org.ektorp.ViewQuery;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PresenceFlushTest {
+	private CouchDbConnector db;
+	private CouchDbSessionRepository repository;
+
+	@Before
+	public void setUp() {
+		db = mock(CouchDbConnector.class);
+		repository = new CouchDbSessionRepository(db, false);
+	}
+
+	private static Session session(final String id) {
+		final Session session = new Session();
+		session.setId(id);
+		session.setKeyword("key" + id);
+		session.setName("Session " + id);
+
+		return session;
+	}
+
+	private static LoggedIn stored(final String rev, final String... visitedIds) {
+		final LoggedIn loggedIn = new LoggedIn();
+		loggedIn.setId("doc");
+		loggedIn.setRevision(rev);
+		loggedIn.setUser("user");
+		loggedIn.setSessionId(visitedIds[0]);
+		loggedIn.setTimestamp(0);
+		for (final String id : visitedIds) {
+			loggedIn.addVisitedSession(session(id));
+		}
+
+		return loggedIn;
+	}
+
+	private static List<String> visitedIds(final LoggedIn loggedIn) {
+		final List<String> ids = new ArrayList<>();
+		for (final VisitedSession vs : loggedIn.getVisitedSessions()) {
+			ids.add(vs.getId());
+		}
+
+		return ids;
+	}
+
+	@Test
+	public void testShouldNotAccessDatabaseOnJoin() {
+		repository.registerAsOnlineUser(new TestUser("user"), session("s1"));
+
+		verify(db, never()).queryView(any(ViewQuery.class), eq(LoggedIn.class));
+		verify(db, never()).executeBulk(anyCollection());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testShouldMergeAgainAfterConflict() {
+		when(db.queryView(any(ViewQuery.class), eq(LoggedIn.class)))
+				.thenReturn(Collections.singletonList(stored("1-a", "s0")))
+				.thenReturn(Collections.singletonList(stored("2-b", "s0", "s2")));
+		when(db.executeBulk(anyCollection()))
+				.thenReturn(Collections.singletonList(DocumentOperationResult.newInstance("doc", "conflict", "")))
+				.thenReturn(Collections.<DocumentOperationResult>emptyList());
+
+		repository.registerAsOnlineUser(new TestUser("user"), session("s1"));
+		repository.flushPresence();
+
+		final ArgumentCaptor<Collection> bulk = ArgumentCaptor.forClass(Collection.class);
+		verify(db, times(2)).executeBulk(bulk.capture());
+		final LoggedIn merged = (LoggedIn) bulk.getAllValues().get(1).iterator().next();
+		assertEquals("2-b", merged.getRevision());
+		assertEquals("s1", merged.getSessionId());
+		assertEquals(Arrays.asList("s0", "s2", "s1"), visitedIds(merged));
+	}
+
+	@Test
+	public void testShouldRequeuePresenceOfFailedWrites() {
+		when(db.queryView(any(ViewQuery.class), eq(LoggedIn.class))).thenReturn(Collections.<LoggedIn>emptyList());
+		when(db.executeBulk(anyCollection()))
+				.thenAnswer(invocation -> {
+					final LoggedIn doc = (LoggedIn) ((Collection<?>) invocation.getArguments()[0]).iterator().next();
+
+					return Collections.singletonList(DocumentOperationResult.newInstance(doc.getId(), "forbidden", ""));
+				})
+				.thenReturn(Collections.<DocumentOperationResult>emptyList());
+
+		repository.registerAsOnlineUser(new TestUser("user"), session("s1"));
+		repository.flushPresence();
+		repository.flushPresence();
+		repository.flushPresence();
+
+		verify(db, times(2)).executeBulk(anyCollection());
+	}
+
+	@Test
+	public void testShouldSkipJoinsAfterSuccessfulWrite() {
+		when(db.queryView(any(ViewQuery.class), eq(LoggedIn.class))).thenReturn(Collections.<LoggedIn>emptyList());
+		when(db.executeBulk(anyCollection())).thenReturn(Collections.<DocumentOperationResult>emptyList());
+
+		repository.registerAsOnlineUser(new TestUser("user"), session("s1"));
+		repository.flushPresence();
+		repository.registerAsOnlineUser(new TestUser("user"), session("s1"));
+		repository.flushPresence();
+
+		verify(db, times(1)).executeBulk(anyCollection());
+	}
+}
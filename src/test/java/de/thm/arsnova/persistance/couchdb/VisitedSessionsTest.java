@@ -0,0 +1,107 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.persistance.couchdb;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.thm.arsnova.entities.LoggedIn;
+import de.thm.arsnova.entities.Session;
+import org.ektorp.CouchDbConnector;
+import org.ektorp.DocumentNotFoundException;
+import org.ektorp.ViewQuery;
+import org.ektorp.ViewResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VisitedSessionsTest {
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private CouchDbConnector db;
+	private CouchDbSessionRepository repository;
+
+	@Before
+	public void setUp() {
+		db = mock(CouchDbConnector.class);
+		repository = new CouchDbSessionRepository(db, false);
+	}
+
+	private static Session session(final String id) {
+		final Session session = new Session();
+		session.setId(id);
+		session.setKeyword("key" + id);
+		session.setName("Session " + id);
+		session.setCreator("creator");
+
+		return session;
+	}
+
+	private ViewResult.Row visitedRow(final String sessionId) {
+		final ViewResult.Row row = mock(ViewResult.Row.class);
+		when(row.getId()).thenReturn("doc");
+		when(row.getValueAsNode()).thenReturn(objectMapper.createObjectNode().put("_id", sessionId));
+
+		return row;
+	}
+
+	@Test
+	public void testShouldIgnoreVisitedSessionsWhichNeverExisted() {
+		final ViewResult visited = mock(ViewResult.class);
+		final List<ViewResult.Row> rows = Arrays.asList(visitedRow("s1"), visitedRow("unknown"));
+		when(visited.getRows()).thenReturn(rows);
+		when(db.queryView(any(ViewQuery.class))).thenReturn(visited);
+		/* Like Ektorp, fail for the error row of the unknown ID unless not found rows are ignored. */
+		when(db.queryView(any(ViewQuery.class), eq(Session.class))).thenAnswer(invocation -> {
+			final ViewQuery query = (ViewQuery) invocation.getArguments()[0];
+			if (!query.isIgnoreNotFound()) {
+				throw new DocumentNotFoundException("_all_docs");
+			}
+
+			return Collections.singletonList(session("s1"));
+		});
+		final LoggedIn loggedIn = new LoggedIn();
+		loggedIn.setId("doc");
+		loggedIn.setUser("user");
+		loggedIn.addVisitedSession(session("s1"));
+		loggedIn.addVisitedSession(session("unknown"));
+		when(db.get(LoggedIn.class, "doc")).thenReturn(loggedIn);
+
+		final List<Session> result = repository.getVisitedSessionsForUsername("user", 0, 0, "name");
+
+		assertEquals(1, result.size());
+		assertEquals("s1", result.get(0).getId());
+
+		/* The unknown ID is removed from the visited sessions in the background. */
+		final ArgumentCaptor<LoggedIn> updated = ArgumentCaptor.forClass(LoggedIn.class);
+		verify(db, timeout(1000)).update(updated.capture());
+		final List<String> remaining = new ArrayList<>();
+		updated.getValue().getVisitedSessions().forEach(vs -> remaining.add(vs.getId()));
+		assertEquals(Collections.singletonList("s1"), remaining);
+	}
+}
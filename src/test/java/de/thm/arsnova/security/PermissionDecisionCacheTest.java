@@ -0,0 +1,135 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.security;
+
+import de.thm.arsnova.cache.InProcessSharedCacheTier;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.DeleteQuestionEvent;
+import de.thm.arsnova.events.DeleteSessionEvent;
+import de.thm.arsnova.events.StatusSessionEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PermissionDecisionCacheTest {
+	private PermissionDecisionCache cache;
+	private Session session;
+
+	@Before
+	public void setUp() {
+		cache = new PermissionDecisionCache();
+		session = new Session();
+		session.setKeyword("12345678");
+	}
+
+	@Test
+	public void testShouldServeCachedDecisions() {
+		assertNull(cache.get("user", PermissionDecisionCache.SESSION, "12345678", "owner"));
+
+		cache.put("user", PermissionDecisionCache.SESSION, "12345678", "owner", true, "12345678");
+		cache.put("user", PermissionDecisionCache.CONTENT, "c1", "owner", false, "12345678");
+
+		assertTrue(cache.get("user", PermissionDecisionCache.SESSION, "12345678", "owner"));
+		assertEquals(Boolean.FALSE, cache.get("user", PermissionDecisionCache.CONTENT, "c1", "owner"));
+		assertNull(cache.get("other", PermissionDecisionCache.CONTENT, "c1", "owner"));
+		assertEquals(2, cache.permissionDecisionCacheHits());
+	}
+
+	@Test
+	public void testShouldNotCacheDecisionsWithoutSession() {
+		cache.put("user", PermissionDecisionCache.CONTENT, "c1", "owner", true, null);
+		cache.put("user", PermissionDecisionCache.COMMENT, "q1", "owner", true, null);
+
+		assertNull(cache.get("user", PermissionDecisionCache.CONTENT, "c1", "owner"));
+		assertNull(cache.get("user", PermissionDecisionCache.COMMENT, "q1", "owner"));
+	}
+
+	@Test
+	public void testShouldInvalidateDecisionsOfSession() {
+		cache.put("user", PermissionDecisionCache.SESSION, "12345678", "owner", true, "12345678");
+		cache.put("user", PermissionDecisionCache.CONTENT, "c1", "owner", true, "12345678");
+		cache.put("user", PermissionDecisionCache.CONTENT, "c2", "owner", true, "87654321");
+
+		cache.invalidateSession("12345678");
+
+		assertNull(cache.get("user", PermissionDecisionCache.SESSION, "12345678", "owner"));
+		assertNull(cache.get("user", PermissionDecisionCache.CONTENT, "c1", "owner"));
+		assertTrue(cache.get("user", PermissionDecisionCache.CONTENT, "c2", "owner"));
+	}
+
+	@Test
+	public void testShouldInvalidateDecisionsOfTarget() {
+		cache.put("user", PermissionDecisionCache.CONTENT, "c1", "owner", true, "12345678");
+		cache.put("other", PermissionDecisionCache.CONTENT, "c1", "read", true, "12345678");
+		cache.put("user", PermissionDecisionCache.CONTENT, "c2", "owner", true, "12345678");
+
+		cache.invalidateTarget(PermissionDecisionCache.CONTENT, "c1");
+
+		assertNull(cache.get("user", PermissionDecisionCache.CONTENT, "c1", "owner"));
+		assertNull(cache.get("other", PermissionDecisionCache.CONTENT, "c1", "read"));
+		assertTrue(cache.get("user", PermissionDecisionCache.CONTENT, "c2", "owner"));
+	}
+
+	@Test
+	public void testShouldInvalidateOnSessionEvents() {
+		cache.put("user", PermissionDecisionCache.SESSION, "12345678", "owner", true, "12345678");
+		cache.onApplicationEvent(new DeleteSessionEvent(this, session));
+		assertNull(cache.get("user", PermissionDecisionCache.SESSION, "12345678", "owner"));
+
+		cache.put("user", PermissionDecisionCache.SESSION, "12345678", "owner", true, "12345678");
+		cache.onApplicationEvent(new StatusSessionEvent(this, session));
+		assertNull(cache.get("user", PermissionDecisionCache.SESSION, "12345678", "owner"));
+	}
+
+	@Test
+	public void testShouldInvalidateOnDeletedContent() {
+		final Content content = new Content();
+		content.setId("c1");
+		cache.put("user", PermissionDecisionCache.CONTENT, "c1", "owner", true, "12345678");
+
+		cache.onApplicationEvent(new DeleteQuestionEvent(this, session, content));
+
+		assertNull(cache.get("user", PermissionDecisionCache.CONTENT, "c1", "owner"));
+	}
+
+	@Test
+	public void testShouldPropagateInvalidationsToOtherNodes() {
+		final InProcessSharedCacheTier sharedTier = new InProcessSharedCacheTier();
+		final PermissionDecisionCache otherNode = new PermissionDecisionCache();
+		ReflectionTestUtils.setField(cache, "sharedTier", sharedTier);
+		ReflectionTestUtils.setField(otherNode, "sharedTier", sharedTier);
+		cache.init();
+		otherNode.init();
+
+		otherNode.put("user", PermissionDecisionCache.SESSION, "12345678", "owner", true, "12345678");
+		otherNode.put("user", PermissionDecisionCache.CONTENT, "c1", "owner", true, "87654321");
+		otherNode.put("user", PermissionDecisionCache.CONTENT, "c2", "owner", true, "87654321");
+
+		cache.invalidateSession("12345678");
+		cache.invalidateTarget(PermissionDecisionCache.CONTENT, "c1");
+
+		assertNull(otherNode.get("user", PermissionDecisionCache.SESSION, "12345678", "owner"));
+		assertNull(otherNode.get("user", PermissionDecisionCache.CONTENT, "c1", "owner"));
+		assertTrue(otherNode.get("user", PermissionDecisionCache.CONTENT, "c2", "owner"));
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.services;
+
+import de.thm.arsnova.entities.Comment;
+import de.thm.arsnova.entities.CommentReadingCount;
+import de.thm.arsnova.entities.Content;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.events.DeleteAllLectureAnswersEvent;
+import de.thm.arsnova.events.DeleteAllPreparationAnswersEvent;
+import de.thm.arsnova.events.DeleteAllQuestionsAnswersEvent;
+import de.thm.arsnova.events.DeleteCommentEvent;
+import de.thm.arsnova.events.NewAnswerEvent;
+import de.thm.arsnova.events.NewCommentEvent;
+import de.thm.arsnova.persistance.AnswerRepository;
+import de.thm.arsnova.persistance.CommentRepository;
+import de.thm.arsnova.persistance.ContentRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionCounterServiceTest {
+	private ContentRepository contentRepository;
+	private AnswerRepository answerRepository;
+	private CommentRepository commentRepository;
+	private SessionCounterService service;
+	private Session session;
+
+	@Before
+	public void setUp() {
+		contentRepository = mock(ContentRepository.class);
+		answerRepository = mock(AnswerRepository.class);
+		commentRepository = mock(CommentRepository.class);
+		service = new SessionCounterService();
+		ReflectionTestUtils.setField(service, "contentRepository", contentRepository);
+		ReflectionTestUtils.setField(service, "answerRepository", answerRepository);
+		ReflectionTestUtils.setField(service, "commentRepository", commentRepository);
+
+		session = new Session();
+		session.setId("session");
+		session.setKeyword("12345678");
+		when(contentRepository.getSkillQuestionCount(session)).thenReturn(3);
+		when(contentRepository.getLectureQuestionCount(session)).thenReturn(2);
+		when(contentRepository.getPreparationQuestionCount(session)).thenReturn(1);
+		when(answerRepository.countLectureQuestionAnswers(session)).thenReturn(10);
+		when(answerRepository.countPreparationQuestionAnswers(session)).thenReturn(5);
+		when(commentRepository.getInterposedReadingCount(session)).thenReturn(new CommentReadingCount(4, 2));
+	}
+
+	private static Content content(final String variant) {
+		final Content content = new Content();
+		content.setQuestionVariant(variant);
+
+		return content;
+	}
+
+	private static Comment comment(final boolean read) {
+		final Comment comment = new Comment();
+		comment.setRead(read);
+
+		return comment;
+	}
+
+	@Test
+	public void testCountsAreLoadedOnce() {
+		assertEquals(3, service.getContentCount(session));
+		assertEquals(10, service.getAnswerCount(session, "lecture"));
+		assertEquals(6, service.getCommentCount(session));
+
+		verify(contentRepository, times(1)).getSkillQuestionCount(session);
+		verify(commentRepository, times(1)).getInterposedReadingCount(session);
+		assertTrue(service.isLoaded(session));
+	}
+
+	@Test
+	public void testConcurrentColdReadsShareSingleLoad() throws InterruptedException {
+		final CountDownLatch loading = new CountDownLatch(1);
+		when(contentRepository.getSkillQuestionCount(session)).thenAnswer(invocation -> {
+			loading.countDown();
+			Thread.sleep(100);
+
+			return 3;
+		});
+		final List<Thread> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(new Thread(() -> service.getContentCount(session)));
+		}
+		readers.get(0).start();
+		loading.await();
+		for (final Thread reader : readers.subList(1, readers.size())) {
+			reader.start();
+		}
+		for (final Thread reader : readers) {
+			reader.join();
+		}
+
+		verify(contentRepository, times(1)).getSkillQuestionCount(session);
+		assertEquals(3, service.getContentCount(session));
+	}
+
+	@Test
+	public void testEventsAreIgnoredUntilCountsAreLoaded() {
+		service.visit(new NewCommentEvent(this, session, comment(false)));
+
+		assertFalse(service.isLoaded(session));
+		assertEquals(6, service.getCommentCount(session));
+	}
+
+	@Test
+	public void testDeleteCommentDecrementsMatchingCounter() {
+		service.getCommentCount(session);
+
+		service.visit(new DeleteCommentEvent(this, session, comment(true)));
+		CommentReadingCount count = service.getCommentReadingCount(session);
+		assertEquals(3, count.getRead());
+		assertEquals(2, count.getUnread());
+
+		service.visit(new DeleteCommentEvent(this, session, comment(false)));
+		count = service.getCommentReadingCount(session);
+		assertEquals(3, count.getRead());
+		assertEquals(1, count.getUnread());
+	}
+
+	@Test
+	public void testOnlyAnswersCreatedByRepositoryAreCounted() {
+		service.getAnswerCount(session, "lecture");
+
+		service.visit(new NewAnswerEvent(answerRepository, session, null, null, content("lecture")));
+		assertEquals(11, service.getAnswerCount(session, "lecture"));
+
+		/* Updates of existing answers are published by the content service. */
+		service.visit(new NewAnswerEvent(this, session, null, null, content("lecture")));
+		assertEquals(11, service.getAnswerCount(session, "lecture"));
+	}
+
+	@Test
+	public void testDeleteAllAnswersResetsCounters() {
+		service.getAnswerCount(session, "lecture");
+
+		service.visit(new DeleteAllLectureAnswersEvent(this, session));
+		assertEquals(0, service.getAnswerCount(session, "lecture"));
+		assertEquals(5, service.getAnswerCount(session, "preparation"));
+
+		service.visit(new DeleteAllPreparationAnswersEvent(this, session));
+		assertEquals(0, service.getAnswerCount(session, "preparation"));
+	}
+
+	@Test
+	public void testDeleteAllQuestionsAnswersResetsBothCounters() {
+		service.getAnswerCount(session, "lecture");
+
+		service.visit(new DeleteAllQuestionsAnswersEvent(this, session));
+		assertEquals(0, service.getAnswerCount(session, "lecture"));
+		assertEquals(0, service.getAnswerCount(session, "preparation"));
+		assertEquals(3, service.getContentCount(session));
+	}
+
+	@Test
+	public void testStaleCountsAreReloadedOnRead() {
+		service.getContentCount(session);
+		when(contentRepository.getSkillQuestionCount(session)).thenReturn(7);
+
+		service.invalidate(session);
+		assertFalse(service.isLoaded(session));
+		assertEquals(7, service.getContentCount(session));
+		assertTrue(service.isLoaded(session));
+		verify(contentRepository, times(2)).getSkillQuestionCount(session);
+	}
+
+	@Test
+	public void testReconciliationReplacesDriftedCounts() {
+		service.getContentCount(session);
+		service.visit(new NewAnswerEvent(answerRepository, session, null, null, content("lecture")));
+		assertEquals(11, service.getAnswerCount(session, "lecture"));
+
+		service.reconcileCounters();
+		assertEquals(10, service.getAnswerCount(session, "lecture"));
+		verify(answerRepository, times(2)).countLectureQuestionAnswers(session);
+	}
+
+	@Test
+	public void testFailedLoadIsRetried() {
+		when(contentRepository.getFlashcardCount(session)).thenThrow(new IllegalStateException());
+		try {
+			service.getContentCount(session);
+			fail("Expected the load to fail.");
+		} catch (final IllegalStateException e) {
+			/* expected */
+		}
+		assertFalse(service.isLoaded(session));
+
+		doReturn(0).when(contentRepository).getFlashcardCount(session);
+		assertEquals(3, service.getContentCount(session));
+		assertTrue(service.isLoaded(session));
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * This file is part of ARSnova Backend.
+ * Copyright (C) 2012-2017 The ARSnova Team
+ *
+ * ARSnova Backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * ARSnova Backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.thm.arsnova.web;
+
+import de.thm.arsnova.cache.SessionRevisionTracker;
+import de.thm.arsnova.cache.SessionRevisionTracker.Scope;
+import de.thm.arsnova.entities.Session;
+import de.thm.arsnova.persistance.SessionRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SessionRevisionETagInterceptorHandlerTest {
+	private SessionRevisionETagInterceptorHandler interceptor;
+	private SessionRevisionTracker tracker;
+	private Session session;
+
+	public static class Handler {
+		@SessionRevisionETag(Scope.CONTENT)
+		public void getContents() { }
+
+		public void getUncached() { }
+	}
+
+	@Before
+	public void setUp() {
+		tracker = new SessionRevisionTracker();
+		session = new Session();
+		session.setId("session");
+		session.setKeyword("12345678");
+		final SessionRepository sessionRepository = mock(SessionRepository.class);
+		when(sessionRepository.getSessionFromKeyword("12345678")).thenReturn(session);
+		interceptor = new SessionRevisionETagInterceptorHandler();
+		ReflectionTestUtils.setField(interceptor, "sessionRevisionTracker", tracker);
+		ReflectionTestUtils.setField(interceptor, "sessionRepository", sessionRepository);
+	}
+
+	private static HandlerMethod handler(final String method) throws NoSuchMethodException {
+		return new HandlerMethod(new Handler(), Handler.class.getMethod(method));
+	}
+
+	private static MockHttpServletRequest request(final String user, final String etag) {
+		final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/lecturerquestion/");
+		request.setParameter("sessionkey", "12345678");
+		request.setRemoteUser(user);
+		if (etag != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+
+		return request;
+	}
+
+	/**
+	 * Runs the interceptor and returns the ETag of the response.
+	 */
+	private String getETag(final MockHttpServletRequest request) throws Exception {
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+		interceptor.preHandle(request, response, handler("getContents"));
+
+		return response.getHeader(HttpHeaders.ETAG);
+	}
+
+	@Test
+	public void testShouldAnswerMatchingETagWithNotModified() throws Exception {
+		final String etag = getETag(request("user", null));
+		assertNotNull(etag);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertFalse(interceptor.preHandle(request("user", etag), response, handler("getContents")));
+		assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+	}
+
+	@Test
+	public void testShouldChangeETagAfterChange() throws Exception {
+		final String etag = getETag(request("user", null));
+
+		tracker.increment(session.getId(), Scope.CONTENT);
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request("user", etag), response, handler("getContents")));
+		assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+		assertNotEquals(etag, response.getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	public void testShouldIgnoreChangesOfOtherScopes() throws Exception {
+		final String etag = getETag(request("user", null));
+
+		tracker.increment(session.getId(), Scope.COMMENTS);
+
+		assertEquals(etag, getETag(request("user", null)));
+	}
+
+	@Test
+	public void testShouldNotServeETagOfOtherUser() throws Exception {
+		final String etag = getETag(request("user", null));
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request("other", etag), response, handler("getContents")));
+		assertNotEquals(etag, response.getHeader(HttpHeaders.ETAG));
+	}
+
+	@Test
+	public void testShouldIgnoreUnannotatedHandlers() throws Exception {
+		final MockHttpServletResponse response = new MockHttpServletResponse();
+
+		assertTrue(interceptor.preHandle(request("user", "*"), response, handler("getUncached")));
+		assertNull(response.getHeader(HttpHeaders.ETAG));
+	}
+}